@@ -0,0 +1,227 @@
+package com.example.application.benchmark;
+
+import com.example.application.model.*;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.*;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Deterministic synthetic airport data in the shape of {@code jsonserver/db.json}. Every flight and its details are
+ * derived from the seed and the flight index alone, so any size can be generated, streamed or randomly accessed
+ * without holding the whole dataset in memory.
+ * <p>
+ * Airport codes are skewed towards a few hubs and about 40% of baggage and cargo items are weighed in pounds.
+ * <pre>
+ * mvn -Pbenchmark test-compile exec:exec -Dbenchmark.main=com.example.application.benchmark.AirportDataset \
+ *     -Dbenchmark.args="100000 jsonserver/db-100k.json"
+ * </pre>
+ */
+public final class AirportDataset {
+
+    public static final int SMALL = 10_000;
+    public static final int MEDIUM = 100_000;
+    public static final int LARGE = 1_000_000;
+
+    private static final String[] AIRPORT_CODES = {
+            "KRK", "WAW", "GDN", "LAX", "YYZ", "FRA", "LHR", "CDG", "AMS", "JFK",
+            "ORD", "ATL", "DXB", "MUC", "MAD", "FCO", "BCN", "VIE", "ZRH", "CPH",
+            "ARN", "OSL", "HEL", "DUB", "LIS", "ATH", "IST", "PRG", "BUD", "LEW",
+            "YYT", "ANC", "SEA", "SFO", "BOS", "MIA", "DEN", "YVR", "NRT", "SIN"
+    };
+    private static final long FIRST_DEPARTURE = OffsetDateTime.parse("2014-01-01T00:00:00Z").toEpochSecond();
+    private static final long DEPARTURE_SPAN_SECONDS = 8L * 365 * 24 * 3600;
+    private static final double POUND_SHARE = 0.4;
+
+    private final int size;
+    private final long seed;
+
+    public AirportDataset(int size, long seed) {
+        this.size = size;
+        this.seed = seed;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public Flight flight(int index) {
+        SplittableRandom random = random(index, 0);
+        String departure = airportCode(random);
+        String arrival = airportCode(random);
+        while (arrival.equals(departure))
+            arrival = airportCode(random);
+        ZoneOffset offset = ZoneOffset.ofHours(random.nextInt(-12, 13));
+        OffsetDateTime departureDate = OffsetDateTime.ofInstant(
+                Instant.ofEpochSecond(FIRST_DEPARTURE + random.nextLong(DEPARTURE_SPAN_SECONDS)), offset);
+        return new Flight(index, random.nextInt(1000, 10000), departure, arrival, departureDate);
+    }
+
+    public FlightDetails details(int index) {
+        SplittableRandom random = random(index, 1);
+        List<Baggage> baggage = new ArrayList<>();
+        List<Cargo> cargo = new ArrayList<>();
+        for (int i = random.nextInt(1, 9); i > 0; i--)
+            baggage.add(new Baggage(baggage.size(), random.nextInt(1, 1000), weightUnit(random),
+                    random.nextInt(1, 1000)));
+        for (int i = random.nextInt(1, 9); i > 0; i--)
+            cargo.add(new Cargo(cargo.size(), random.nextInt(1, 1000), weightUnit(random),
+                    random.nextInt(1, 1000)));
+        return new FlightDetails(index, baggage, cargo);
+    }
+
+    public List<Flight> flights() {
+        List<Flight> flights = new ArrayList<>(size);
+        for (int i = 0; i < size; i++)
+            flights.add(flight(i));
+        return flights;
+    }
+
+    /**
+     * Streams the {@code flight} array to the output in the json-server feed format.
+     */
+    public void writeFlights(OutputStream outputStream) throws IOException {
+        try (JsonGenerator generator = new JsonFactory().createGenerator(outputStream, JsonEncoding.UTF8)) {
+            writeFlights(generator);
+        }
+    }
+
+    /**
+     * Streams the {@code details} array to the output in the json-server feed format.
+     */
+    public void writeDetails(OutputStream outputStream) throws IOException {
+        try (JsonGenerator generator = new JsonFactory().createGenerator(outputStream, JsonEncoding.UTF8)) {
+            writeDetails(generator);
+        }
+    }
+
+    /**
+     * Streams a complete {@code db.json} document, usable as json-server input.
+     */
+    public void writeDatabase(OutputStream outputStream) throws IOException {
+        try (JsonGenerator generator = new JsonFactory().createGenerator(outputStream, JsonEncoding.UTF8)) {
+            generator.writeStartObject();
+            generator.writeFieldName("flight");
+            writeFlights(generator);
+            generator.writeFieldName("details");
+            writeDetails(generator);
+            generator.writeEndObject();
+        }
+    }
+
+    public byte[] flightsJson() throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        writeFlights(outputStream);
+        return outputStream.toByteArray();
+    }
+
+    public byte[] detailsJson() throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        writeDetails(outputStream);
+        return outputStream.toByteArray();
+    }
+
+    /**
+     * @return the single flight object served by json-server at {@code /flight/{id}}
+     */
+    public byte[] flightJson(int index) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try (JsonGenerator generator = new JsonFactory().createGenerator(outputStream, JsonEncoding.UTF8)) {
+            writeFlight(generator, flight(index));
+        }
+        return outputStream.toByteArray();
+    }
+
+    /**
+     * @return the {@code details} array filtered to the given flights, as served for
+     * {@code /details?flightId=..&flightId=..}; indexes outside the dataset are skipped
+     */
+    public byte[] detailsJson(Collection<Integer> indexes) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try (JsonGenerator generator = new JsonFactory().createGenerator(outputStream, JsonEncoding.UTF8)) {
+            generator.writeStartArray();
+            for (int index : indexes) {
+                if (index >= 0 && index < size)
+                    writeDetails(generator, details(index));
+            }
+            generator.writeEndArray();
+        }
+        return outputStream.toByteArray();
+    }
+
+    private void writeFlights(JsonGenerator generator) throws IOException {
+        generator.writeStartArray();
+        for (int i = 0; i < size; i++)
+            writeFlight(generator, flight(i));
+        generator.writeEndArray();
+    }
+
+    private void writeDetails(JsonGenerator generator) throws IOException {
+        generator.writeStartArray();
+        for (int i = 0; i < size; i++)
+            writeDetails(generator, details(i));
+        generator.writeEndArray();
+    }
+
+    private static void writeFlight(JsonGenerator generator, Flight flight) throws IOException {
+        generator.writeStartObject();
+        generator.writeNumberField("id", flight.getId());
+        generator.writeNumberField("flightNumber", flight.getFlightNumber());
+        generator.writeStringField("departureAirportIATACode", flight.getDepartureAirportIATACode());
+        generator.writeStringField("arrivalAirportIATACode", flight.getArrivalAirportIATACode());
+        generator.writeStringField("departureDate", flight.getDepartureDate().toString());
+        generator.writeEndObject();
+    }
+
+    private static void writeDetails(JsonGenerator generator, FlightDetails details) throws IOException {
+        generator.writeStartObject();
+        generator.writeNumberField("flightId", details.getFlightId());
+        generator.writeArrayFieldStart("baggage");
+        for (Baggage item : details.getBaggage())
+            writeItem(generator, item.getId(), item.getWeight(), item.getWeightUnit(), item.getPieces());
+        generator.writeEndArray();
+        generator.writeArrayFieldStart("cargo");
+        for (Cargo item : details.getCargo())
+            writeItem(generator, item.getId(), item.getWeight(), item.getWeightUnit(), item.getPieces());
+        generator.writeEndArray();
+        generator.writeEndObject();
+    }
+
+    private static void writeItem(JsonGenerator generator, int id, int weight, WeightUnit weightUnit, int pieces)
+            throws IOException {
+        generator.writeStartObject();
+        generator.writeNumberField("id", id);
+        generator.writeNumberField("weight", weight);
+        generator.writeStringField("weightUnit", weightUnit.getCode());
+        generator.writeNumberField("pieces", pieces);
+        generator.writeEndObject();
+    }
+
+    private SplittableRandom random(int index, int stream) {
+        return new SplittableRandom(seed * 31 + index * 2L + stream);
+    }
+
+    private static String airportCode(SplittableRandom random) {
+        return AIRPORT_CODES[(int) (Math.pow(random.nextDouble(), 2.5) * AIRPORT_CODES.length)];
+    }
+
+    private static WeightUnit weightUnit(SplittableRandom random) {
+        return random.nextDouble() < POUND_SHARE ? WeightUnit.LB : WeightUnit.KG;
+    }
+
+    public static void main(String[] args) throws IOException {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : SMALL;
+        String path = args.length > 1 ? args[1] : "db-" + size + ".json";
+        try (OutputStream outputStream = new BufferedOutputStream(new FileOutputStream(path))) {
+            new AirportDataset(size, 42).writeDatabase(outputStream);
+        }
+    }
+}
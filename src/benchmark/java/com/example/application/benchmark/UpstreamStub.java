@@ -0,0 +1,157 @@
+package com.example.application.benchmark;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-JVM stand-in for json-server serving an {@link AirportDataset} on a free loopback port: {@code /flight},
+ * {@code /flight/{id}}, {@code /details} and {@code /details?flightId=..}. Every response is delayed by the
+ * configured latency plus a random jitter, and the configured share of requests fails with 503. The full feeds
+ * carry an ETag and answer {@code If-None-Match} with 304, like json-server does.
+ */
+public final class UpstreamStub implements AutoCloseable {
+
+    private final AirportDataset dataset;
+    private final int latencyMillis;
+    private final int jitterMillis;
+    private final double errorRate;
+    private final byte[] flightsJson;
+    private final byte[] detailsJson;
+    private final String flightsETag;
+    private final String detailsETag;
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+
+    public UpstreamStub(AirportDataset dataset, int latencyMillis, int jitterMillis, double errorRate)
+            throws IOException {
+        this.dataset = dataset;
+        this.latencyMillis = latencyMillis;
+        this.jitterMillis = jitterMillis;
+        this.errorRate = errorRate;
+        flightsJson = dataset.flightsJson();
+        detailsJson = dataset.detailsJson();
+        flightsETag = "\"flight-" + dataset.size() + "\"";
+        detailsETag = "\"details-" + dataset.size() + "\"";
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/flight", this::handleFlights);
+        server.createContext("/details", this::handleDetails);
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    public String getFlightsUrl() {
+        return "http://localhost:" + server.getAddress().getPort() + "/flight";
+    }
+
+    public String getDetailsUrl() {
+        return "http://localhost:" + server.getAddress().getPort() + "/details";
+    }
+
+    public long getRequestCount() {
+        return requests.sum();
+    }
+
+    public long getErrorCount() {
+        return errors.sum();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handleFlights(HttpExchange exchange) throws IOException {
+        if (!delay(exchange))
+            return;
+        String path = exchange.getRequestURI().getPath();
+        if (path.equals("/flight") || path.equals("/flight/")) {
+            respond(exchange, flightsJson, flightsETag);
+            return;
+        }
+        try {
+            int index = Integer.parseInt(path.substring("/flight/".length()));
+            if (index >= 0 && index < dataset.size()) {
+                respond(exchange, dataset.flightJson(index), null);
+                return;
+            }
+        } catch (NumberFormatException e) {
+            // answered with 404 below
+        }
+        respond(exchange, 404, "{}".getBytes());
+    }
+
+    private void handleDetails(HttpExchange exchange) throws IOException {
+        if (!delay(exchange))
+            return;
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query == null || query.isEmpty()) {
+            respond(exchange, detailsJson, detailsETag);
+            return;
+        }
+        List<Integer> flightIds = new ArrayList<>();
+        for (String parameter : query.split("&")) {
+            if (!parameter.startsWith("flightId="))
+                continue;
+            try {
+                flightIds.add(Integer.parseInt(parameter.substring("flightId=".length())));
+            } catch (NumberFormatException e) {
+                // json-server ignores values that match nothing
+            }
+        }
+        respond(exchange, dataset.detailsJson(flightIds), null);
+    }
+
+    /**
+     * @return false when the request was failed on purpose and has already been answered
+     */
+    private boolean delay(HttpExchange exchange) throws IOException {
+        requests.increment();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long millis = latencyMillis + (jitterMillis > 0 ? random.nextInt(jitterMillis + 1) : 0);
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (random.nextDouble() < errorRate) {
+            errors.increment();
+            respond(exchange, 503, "{}".getBytes());
+            return false;
+        }
+        return true;
+    }
+
+    private void respond(HttpExchange exchange, byte[] body, String eTag) throws IOException {
+        if (eTag != null) {
+            exchange.getResponseHeaders().set("ETag", eTag);
+            if (eTag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                exchange.sendResponseHeaders(304, -1);
+                exchange.close();
+                return;
+            }
+        }
+        respond(exchange, 200, body);
+    }
+
+    private static void respond(HttpExchange exchange, int status, byte[] body) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream outputStream = exchange.getResponseBody()) {
+            outputStream.write(body);
+        }
+    }
+}
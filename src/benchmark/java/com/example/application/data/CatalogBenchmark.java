@@ -0,0 +1,80 @@
+package com.example.application.data;
+
+import com.example.application.benchmark.AirportDataset;
+import com.example.application.model.Flight;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Catalog lookups ({@code Repository.findFlightById}, the flight-number lookup and {@code Repository.getFlightByDate}
+ * all delegate to {@link FlightCatalog}) and streaming catalog load from the {@code /flight} feed.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class CatalogBenchmark {
+
+    private static final int KEYS = 1024;
+
+    @Param({"10000", "100000", "1000000"})
+    public int size;
+
+    private FlightFeedReader flightFeedReader;
+    private FlightCatalog catalog;
+    private byte[] flightsJson;
+    private final int[] ids = new int[KEYS];
+    private final int[] flightNumbers = new int[KEYS];
+    private final OffsetDateTime[] departureDates = new OffsetDateTime[KEYS];
+    private int next;
+
+    @Setup
+    public void setUp() throws IOException {
+        AirportDataset dataset = new AirportDataset(size, 42);
+        flightFeedReader = new FlightFeedReader(new ObjectMapper().findAndRegisterModules());
+        flightsJson = dataset.flightsJson();
+        catalog = loadCatalog();
+
+        List<Flight> flights = catalog.getFlights();
+        SplittableRandom random = new SplittableRandom(7);
+        for (int i = 0; i < KEYS; i++) {
+            Flight flight = flights.get(random.nextInt(flights.size()));
+            ids[i] = flight.getId();
+            flightNumbers[i] = flight.getFlightNumber();
+            departureDates[i] = flight.getDepartureDate();
+        }
+    }
+
+    @Benchmark
+    public Optional<Flight> findById() {
+        return catalog.findById(ids[next++ & (KEYS - 1)]);
+    }
+
+    @Benchmark
+    public Optional<Flight> findByFlightNumber() {
+        return catalog.findByFlightNumber(flightNumbers[next++ & (KEYS - 1)]);
+    }
+
+    @Benchmark
+    public Optional<Flight> findByDepartureDate() {
+        return catalog.findByDepartureDate(departureDates[next++ & (KEYS - 1)]);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public FlightCatalog loadCatalog() throws IOException {
+        FlightCatalog.Builder builder = FlightCatalog.builder();
+        flightFeedReader.readFlights(new ByteArrayInputStream(flightsJson), builder::add);
+        return builder.build();
+    }
+}
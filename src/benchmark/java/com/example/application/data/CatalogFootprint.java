@@ -0,0 +1,53 @@
+package com.example.application.data;
+
+import com.example.application.benchmark.AirportDataset;
+import com.example.application.model.Flight;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.List;
+
+/**
+ * Retained heap per flight of a plain {@code List<Flight>}, as the feed is parsed, against the same flights held
+ * in a {@link FlightCatalog}, and of the catalog together with a {@link StatisticsIndex} knowing the details of
+ * every flight. Run with the size as the only argument, e.g. {@code 1000000}; the numbers are approximate,
+ * measured as the used heap after a full GC with and without the structure.
+ */
+public final class CatalogFootprint {
+
+    private CatalogFootprint() {}
+
+    public static void main(String[] args) {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        AirportDataset dataset = new AirportDataset(size, 42);
+
+        long baseline = usedHeap();
+        List<Flight> flights = dataset.flights();
+        long listBytes = usedHeap() - baseline;
+
+        FlightCatalog catalog = new FlightCatalog(flights);
+        flights = null;
+        long catalogBytes = usedHeap() - baseline;
+
+        StatisticsIndex statisticsIndex = new StatisticsIndex();
+        statisticsIndex.applyFlights(catalog);
+        for (int i = 0; i < size; i++)
+            statisticsIndex.applyDetails(dataset.details(i));
+        long indexedBytes = usedHeap() - baseline;
+
+        System.out.printf("%d flights%n", catalog.getFlights().size());
+        System.out.printf("List<Flight>:  %,d bytes, %.1f bytes per flight%n", listBytes, (double) listBytes / size);
+        System.out.printf("FlightCatalog: %,d bytes, %.1f bytes per flight%n", catalogBytes,
+                (double) catalogBytes / size);
+        System.out.printf("FlightCatalog + StatisticsIndex: %,d bytes, %.1f bytes per flight%n", indexedBytes,
+                (double) indexedBytes / size);
+        System.out.printf("%d airports indexed%n", statisticsIndex.getBusiestAirports(Integer.MAX_VALUE).size());
+    }
+
+    private static long usedHeap() {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        for (int i = 0; i < 3; i++)
+            System.gc();
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+}
@@ -0,0 +1,364 @@
+package com.example.application.data;
+
+import com.example.application.SearchTerm;
+import com.example.application.benchmark.AirportDataset;
+import com.example.application.benchmark.UpstreamStub;
+import com.example.application.controller.Controller;
+import com.example.application.instrumentation.Instrumentation;
+import com.example.application.model.Flight;
+import com.example.application.utils.FlightNotFoundException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.vaadin.flow.data.provider.DataProvider;
+import com.vaadin.flow.data.provider.Query;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.client.RestTemplate;
+
+import java.lang.management.ManagementFactory;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.stream.Collectors;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+/**
+ * Offline load test: serves an {@link AirportDataset} from an {@link UpstreamStub}, wires {@link Repository} and
+ * {@link Service} against it and lets many simulated users call the service the way {@code MainView} does and the
+ * REST endpoints through MockMvc, without starting a servlet container or the Vaadin frontend. Reports throughput,
+ * p50 and p99 per operation, upstream traffic and the heap one {@code MainView} session retains outside its Vaadin
+ * components. Exits with status 1 when the overall p99 exceeds {@code max-p99} milliseconds or the share of failed
+ * operations exceeds {@code max-error-rate}. The initial catalog download is retried, since the stub fails requests
+ * on purpose.
+ * <p>
+ * It needs the upstream stub and datasets of {@code src/benchmark/java} and runs for tens of seconds, so it is run
+ * by the test phase of the {@code benchmark} profile rather than with the unit tests.
+ * <pre>
+ * mvn -Pbenchmark test -Dload-test.args="users=300 seconds=60 size=100000 latency=20 jitter=10 error-rate=0.01 max-p99=250 max-error-rate=0.05"
+ * </pre>
+ */
+public final class LoadTest {
+
+    private enum Operation {
+        GRID_PAGE, FLIGHT_DETAILS, STATISTICS, RANGE_STATISTICS, REST_WEIGHTS, REST_STATISTICS
+    }
+
+    private static final int SESSIONS_FOR_HEAP = 200;
+    private static final int BOOTSTRAP_ATTEMPTS = 10;
+
+    private LoadTest() {}
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parse(args);
+        int users = Integer.parseInt(options.getOrDefault("users", "200"));
+        int seconds = Integer.parseInt(options.getOrDefault("seconds", "30"));
+        int size = Integer.parseInt(options.getOrDefault("size", String.valueOf(AirportDataset.SMALL)));
+        int latency = Integer.parseInt(options.getOrDefault("latency", "20"));
+        int jitter = Integer.parseInt(options.getOrDefault("jitter", "10"));
+        double errorRate = Double.parseDouble(options.getOrDefault("error-rate", "0.01"));
+        long maxP99Millis = Long.parseLong(options.getOrDefault("max-p99", "0"));
+        double maxErrorRate = Double.parseDouble(options.getOrDefault("max-error-rate", "1"));
+
+        ExecutorService upstreamExecutor = Executors.newFixedThreadPool(8);
+        ExecutorService upstreamCallExecutor = Executors.newCachedThreadPool();
+        try (UpstreamStub upstream = new UpstreamStub(new AirportDataset(size, 42), latency, jitter, errorRate);
+             CloseableHttpClient httpClient = HttpClients.custom()
+                     .setMaxConnTotal(50).setMaxConnPerRoute(50)
+                     .setDefaultRequestConfig(RequestConfig.custom()
+                             .setConnectTimeout(2000).setSocketTimeout(5000).build())
+                     .build()) {
+            StatisticsIndex statisticsIndex = new StatisticsIndex();
+            Repository repository = new Repository(
+                    new RestTemplate(new HttpComponentsClientHttpRequestFactory(httpClient)),
+                    upstream.getFlightsUrl(), upstream.getDetailsUrl(), upstreamExecutor, statisticsIndex,
+                    new FlightFeedReader(new ObjectMapper().findAndRegisterModules()),
+                    new FlightDetailsCache(10_000, 0, 300), new CatalogSnapshotFile(""),
+                    new CatalogChangeBroadcaster(), 100, 4, upstreamCallExecutor, 16, 1000, true, 20);
+            Instrumentation instrumentation = new Instrumentation(new SimpleMeterRegistry(), true);
+            Service service = new Service(repository, statisticsIndex, instrumentation);
+            MockMvc mockMvc = MockMvcBuilders.standaloneSetup(new Controller(service)).build();
+
+            long start = System.nanoTime();
+            for (int attempt = 0; attempt < BOOTSTRAP_ATTEMPTS && service.countFlights() == 0; attempt++)
+                repository.refreshCatalog();
+            if (service.countFlights() == 0)
+                throw new IllegalStateException("The catalog could not be loaded from the upstream stub in "
+                        + BOOTSTRAP_ATTEMPTS + " attempts");
+            System.out.printf("Catalog of %d flights loaded in %d ms%n", service.countFlights(),
+                    (System.nanoTime() - start) / 1_000_000);
+
+            printHeapPerSession(service);
+
+            long upstreamBefore = upstream.getRequestCount();
+            Result result = run(service, mockMvc, users, seconds);
+            result.print(seconds);
+            System.out.printf("Upstream: %d requests, %d failed on purpose%n",
+                    upstream.getRequestCount() - upstreamBefore, upstream.getErrorCount());
+            System.out.println("Details cache: " + service.getDetailsCacheStatistics());
+
+            if (maxP99Millis > 0 && result.percentile(null, 0.99) > maxP99Millis * 1_000_000) {
+                System.out.printf("FAILED: p99 above %d ms%n", maxP99Millis);
+                System.exit(1);
+            }
+            if (result.errorRate() > maxErrorRate) {
+                System.out.printf("FAILED: %.2f%% of the operations failed, more than %.2f%%%n",
+                        result.errorRate() * 100, maxErrorRate * 100);
+                System.exit(1);
+            }
+        } finally {
+            upstreamExecutor.shutdownNow();
+            upstreamCallExecutor.shutdownNow();
+        }
+    }
+
+    private static Result run(Service service, MockMvc mockMvc, int users, int seconds) throws InterruptedException {
+        List<Flight> flights = service.findAllFlights();
+        List<String> airportCodes = new ArrayList<>(service.getAirportCodes());
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+        Result result = new Result();
+        List<Thread> threads = new ArrayList<>();
+        for (int user = 0; user < users; user++) {
+            Thread thread = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                Operation[] operations = Operation.values();
+                while (System.nanoTime() < deadline) {
+                    Operation operation = operations[random.nextInt(operations.length)];
+                    Flight flight = flights.get(random.nextInt(flights.size()));
+                    String code = airportCodes.get(random.nextInt(airportCodes.size()));
+                    long start = System.nanoTime();
+                    boolean failed = false;
+                    try {
+                        failed = !execute(operation, service, mockMvc, flight, code, random);
+                    } catch (Exception e) {
+                        failed = true;
+                    }
+                    result.record(operation, System.nanoTime() - start, failed);
+                }
+            }, "load-test-user-" + user);
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads)
+            thread.join();
+        return result;
+    }
+
+    /**
+     * @return false when the operation failed without an exception, e.g. a 5xx response
+     */
+    private static boolean execute(Operation operation, Service service, MockMvc mockMvc, Flight flight, String code,
+                                   ThreadLocalRandom random) throws Exception {
+        switch (operation) {
+            case GRID_PAGE:
+                service.fetchFlights(random.nextInt(Math.max(1, service.countFlights() - 50)), 50,
+                        random.nextBoolean() ? "departureDate" : null, random.nextBoolean()).count();
+                return true;
+            case FLIGHT_DETAILS:
+                try {
+                    service.getWeights(service.findFlightDetails(flight, SearchTerm.FLIGHT_NUMBER));
+                } catch (FlightNotFoundException e) {
+                    // flights without details are a valid answer
+                }
+                return true;
+            case STATISTICS:
+                service.getFlightsStatistics(code, random.nextBoolean() ? flight.getDepartureDate() : null);
+                return true;
+            case RANGE_STATISTICS:
+                Instant from = flight.getDepartureDate().toInstant();
+                service.getFlightsStatistics(code, from, from.plus(30, ChronoUnit.DAYS));
+                return true;
+            case REST_WEIGHTS:
+                int status = mockMvc.perform(get("/api/flights/{flightNumber}/weights", flight.getFlightNumber()))
+                        .andReturn().getResponse().getStatus();
+                return status < 500;
+            case REST_STATISTICS:
+                return mockMvc.perform(get("/api/airports/{code}/statistics", code))
+                        .andReturn().getResponse().getStatus() < 500;
+            default:
+                throw new IllegalArgumentException(operation.name());
+        }
+    }
+
+    /**
+     * Builds the state each browser session keeps outside its Vaadin components and reports the heap it retains on
+     * average. The views themselves need a running {@code VaadinService}, so they are left out.
+     */
+    private static void printHeapPerSession(Service service) {
+        long before = usedHeapAfterGc();
+        List<SessionState> sessions = new ArrayList<>(SESSIONS_FOR_HEAP);
+        for (int i = 0; i < SESSIONS_FOR_HEAP; i++)
+            sessions.add(new SessionState(service));
+        long after = usedHeapAfterGc();
+        System.out.printf("Heap per session, without Vaadin components: ~%d KB (%d sessions)%n",
+                (after - before) / sessions.size() / 1024, sessions.size());
+        sessions.forEach(SessionState::close);
+    }
+
+    private static long usedHeapAfterGc() {
+        for (int i = 0; i < 3; i++)
+            System.gc();
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    private static Map<String, String> parse(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (separator < 0)
+                throw new IllegalArgumentException("Expected key=value, got " + arg);
+            options.put(arg.substring(0, separator), arg.substring(separator + 1));
+        }
+        return options;
+    }
+
+    /**
+     * Latencies in nanoseconds per operation, collected from all user threads.
+     */
+    private static final class Result {
+
+        private final AtomicLongArray failures = new AtomicLongArray(Operation.values().length);
+        private final ThreadLocal<Map<Operation, LongBuffer>> buffers = ThreadLocal.withInitial(() -> {
+            Map<Operation, LongBuffer> perThread = new EnumMap<>(Operation.class);
+            for (Operation operation : Operation.values()) {
+                LongBuffer buffer = new LongBuffer();
+                perThread.put(operation, buffer);
+                register(operation, buffer);
+            }
+            return perThread;
+        });
+        private final List<Map.Entry<Operation, LongBuffer>> registered = new ArrayList<>();
+
+        void record(Operation operation, long nanos, boolean failed) {
+            buffers.get().get(operation).add(nanos);
+            if (failed)
+                failures.incrementAndGet(operation.ordinal());
+        }
+
+        private synchronized void register(Operation operation, LongBuffer buffer) {
+            registered.add(new AbstractMap.SimpleEntry<>(operation, buffer));
+        }
+
+        /**
+         * @param operation the operation, or {@code null} for all of them
+         */
+        long percentile(Operation operation, double quantile) {
+            return at(sorted(operation), quantile);
+        }
+
+        /**
+         * @return share of failed operations, 0 when none ran
+         */
+        double errorRate() {
+            long failed = 0;
+            for (Operation operation : Operation.values())
+                failed += failures.get(operation.ordinal());
+            long count = sorted(null).length;
+            return count > 0 ? (double) failed / count : 0;
+        }
+
+        void print(int seconds) {
+            System.out.printf("%-18s %10s %10s %10s %10s %8s%n", "operation", "count", "ops/s", "p50 ms", "p99 ms",
+                    "errors");
+            long failed = 0;
+            for (Operation operation : Operation.values()) {
+                printRow(operation.name(), sorted(operation), failures.get(operation.ordinal()), seconds);
+                failed += failures.get(operation.ordinal());
+            }
+            printRow("TOTAL", sorted(null), failed, seconds);
+        }
+
+        private static void printRow(String name, long[] sorted, long failed, int seconds) {
+            System.out.printf("%-18s %10d %10.0f %10.2f %10.2f %8d%n", name, sorted.length,
+                    sorted.length / (double) seconds, at(sorted, 0.5) / 1e6, at(sorted, 0.99) / 1e6, failed);
+        }
+
+        private static long at(long[] sorted, double quantile) {
+            return sorted.length == 0 ? 0 : sorted[Math.max(0, (int) Math.ceil(quantile * sorted.length) - 1)];
+        }
+
+        private synchronized long[] sorted(Operation operation) {
+            LongBuffer all = new LongBuffer();
+            for (Map.Entry<Operation, LongBuffer> entry : registered) {
+                if (operation == null || entry.getKey() == operation)
+                    all.addAll(entry.getValue());
+            }
+            long[] sorted = all.toArray();
+            Arrays.sort(sorted);
+            return sorted;
+        }
+    }
+
+    /**
+     * What {@code MainView} holds for one session besides its components: lazy data providers of the flight grid
+     * and the three combo boxes, the first page each has fetched, and the catalog change listener.
+     */
+    private static final class SessionState {
+
+        private static final int PAGE_SIZE = 50;
+
+        private final List<DataProvider<?, ?>> dataProviders = new ArrayList<>();
+        private final List<List<?>> pages = new ArrayList<>();
+        private final Runnable removeListener;
+
+        SessionState(Service service) {
+            add(DataProvider.<Flight>fromCallbacks(
+                    query -> service.fetchFlights(query.getOffset(), query.getLimit(), null, false),
+                    query -> service.countFlights()), null);
+            add(DataProvider.<Integer, String>fromFilteringCallbacks(
+                    query -> service.suggestFlightNumbers(query.getFilter().orElse(null), query.getOffset(),
+                            query.getLimit()),
+                    query -> service.countFlightNumberSuggestions(query.getFilter().orElse(null))), "");
+            add(DataProvider.<String, String>fromFilteringCallbacks(
+                    query -> service.suggestAirportCodes(query.getFilter().orElse(null), query.getOffset(),
+                            query.getLimit()),
+                    query -> service.countAirportCodeSuggestions(query.getFilter().orElse(null))), "");
+            add(DataProvider.<OffsetDateTime, String>fromFilteringCallbacks(
+                    query -> service.fetchDepartureDates(query.getFilter().orElse(null), query.getOffset(),
+                            query.getLimit()),
+                    query -> service.countDepartureDates(query.getFilter().orElse(null))), "");
+            removeListener = service.addCatalogChangeListener(changes -> dataProviders.forEach(
+                    DataProvider::refreshAll));
+        }
+
+        private <T, F> void add(DataProvider<T, F> dataProvider, F filter) {
+            dataProviders.add(dataProvider);
+            pages.add(dataProvider.fetch(new Query<>(0, PAGE_SIZE, Collections.emptyList(), null, filter))
+                    .collect(Collectors.toList()));
+        }
+
+        void close() {
+            removeListener.run();
+        }
+    }
+
+    private static final class LongBuffer {
+
+        private long[] values = new long[1024];
+        private int size;
+
+        void add(long value) {
+            if (size == values.length)
+                values = Arrays.copyOf(values, size * 2);
+            values[size++] = value;
+        }
+
+        void addAll(LongBuffer other) {
+            for (int i = 0; i < other.size; i++)
+                add(other.values[i]);
+        }
+
+        long[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.example.application.data;
+
+import com.example.application.benchmark.AirportDataset;
+import com.example.application.instrumentation.Instrumentation;
+import com.example.application.model.Flight;
+import com.example.application.model.RankedAirport;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link Service#getFlightsStatistics} for whole-period and single-date queries, the parallel all-airports pass
+ * of {@link AirportStatisticsTask}, plus the cost of applying changed details to the statistics index.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class StatisticsBenchmark {
+
+    private static final int KEYS = 1024;
+
+    @Param({"10000", "100000", "1000000"})
+    public int size;
+
+    private AirportDataset dataset;
+    private FlightCatalog catalog;
+    private StatisticsIndex statisticsIndex;
+    private Service service;
+    private final String[] codes = new String[KEYS];
+    private final OffsetDateTime[] departureDates = new OffsetDateTime[KEYS];
+    private int next;
+
+    @Setup
+    public void setUp() {
+        dataset = new AirportDataset(size, 42);
+        statisticsIndex = new StatisticsIndex();
+        catalog = new FlightCatalog(dataset.flights());
+        statisticsIndex.applyFlights(catalog);
+        List<Flight> flights = catalog.getFlights();
+        for (int i = 0; i < size; i++)
+            statisticsIndex.applyDetails(dataset.details(i));
+        service = new Service(null, statisticsIndex, new Instrumentation(new SimpleMeterRegistry(), false));
+
+        SplittableRandom random = new SplittableRandom(7);
+        for (int i = 0; i < KEYS; i++) {
+            Flight flight = flights.get(random.nextInt(flights.size()));
+            codes[i] = flight.getDepartureAirportIATACode();
+            departureDates[i] = flight.getDepartureDate();
+        }
+    }
+
+    @Benchmark
+    public Map<String, Integer> statisticsForAllTime() {
+        return service.getFlightsStatistics(codes[next++ & (KEYS - 1)], null);
+    }
+
+    @Benchmark
+    public Map<String, Integer> statisticsForDate() {
+        int key = next++ & (KEYS - 1);
+        return service.getFlightsStatistics(codes[key], departureDates[key]);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public List<RankedAirport> allAirportsStatistics() {
+        return AirportStatisticsTask.compute(catalog, statisticsIndex, null, null);
+    }
+
+    @Benchmark
+    public void applyChangedDetails() {
+        statisticsIndex.applyDetails(dataset.details(Math.floorMod(next++ * 7919, size)));
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.application.data;
+
+import com.example.application.benchmark.AirportDataset;
+import com.example.application.instrumentation.Instrumentation;
+import com.example.application.model.FlightDetails;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Weight aggregation over all flights with {@link Service#getWeights}, weight computation for freshly loaded
+ * details, and streaming deserialization of the {@code /details} feed.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class WeightsBenchmark {
+
+    @Param({"10000", "100000", "1000000"})
+    public int size;
+
+    private FlightFeedReader flightFeedReader;
+    private Service service;
+    private FlightDetails[] flightDetails;
+    private byte[] detailsJson;
+    private int next;
+
+    @Setup
+    public void setUp() throws IOException {
+        AirportDataset dataset = new AirportDataset(size, 42);
+        flightFeedReader = new FlightFeedReader(new ObjectMapper().findAndRegisterModules());
+        service = new Service(null, null, new Instrumentation(new SimpleMeterRegistry(), false));
+        flightDetails = new FlightDetails[size];
+        for (int i = 0; i < size; i++)
+            flightDetails[i] = dataset.details(i);
+        detailsJson = dataset.detailsJson();
+    }
+
+    @Benchmark
+    public double aggregateWeights() {
+        double total = 0;
+        for (FlightDetails details : flightDetails)
+            total += service.getWeights(details).getTotal();
+        return total;
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public FlightDetails computeWeights() {
+        FlightDetails details = flightDetails[Math.floorMod(next++, size)];
+        return new FlightDetails(details.getFlightId(), details.getBaggage(), details.getCargo());
+    }
+
+    @Benchmark
+    public void readDetails(Blackhole blackhole) throws IOException {
+        flightFeedReader.readDetails(new ByteArrayInputStream(detailsJson), blackhole::consume);
+    }
+}
@@ -1,6 +1,7 @@
 package com.example.application;
 
 import com.vaadin.flow.component.page.AppShellConfigurator;
+import com.vaadin.flow.component.page.Push;
 import com.vaadin.flow.server.PWA;
 import com.vaadin.flow.theme.Theme;
 import com.vaadin.flow.theme.material.Material;
@@ -15,8 +16,11 @@ import org.vaadin.artur.helpers.LaunchUtil;
  * Use the @PWA annotation make the application installable on phones, tablets
  * and some desktop browsers.
  *
+ * The @Push annotation lets views deliver results of background work to the browser.
+ *
  */
 @SpringBootApplication
+@Push
 @Theme(themeClass = Material.class, variant = Material.DARK)
 @PWA(name = "Airport", shortName = "Airport", offlineResources = {"images/logo.png"})
 public class Application extends SpringBootServletInitializer implements AppShellConfigurator {
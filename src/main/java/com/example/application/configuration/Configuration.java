@@ -1,13 +1,85 @@
 package com.example.application.configuration;
 
+import com.example.application.instrumentation.Instrumentation;
+import com.example.application.instrumentation.UpstreamMetricsInterceptor;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.web.client.RestTemplate;
 
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
 @org.springframework.context.annotation.Configuration
+@EnableScheduling
 public class Configuration {
 
     @Bean
-    RestTemplate restTemplate(){
-        return new RestTemplate();
+    RestTemplate restTemplate(CloseableHttpClient upstreamHttpClient, Instrumentation instrumentation,
+                              @Value("${upstream.max-in-flight:32}") int maxInFlight){
+        RestTemplate restTemplate = new RestTemplate(new HttpComponentsClientHttpRequestFactory(upstreamHttpClient));
+        restTemplate.getInterceptors().add(new InFlightLimitInterceptor(maxInFlight));
+        restTemplate.getInterceptors().add(new UpstreamMetricsInterceptor(instrumentation));
+        return restTemplate;
+    }
+
+    @Bean(destroyMethod = "close")
+    CloseableHttpClient upstreamHttpClient(@Value("${upstream.pool.max-total:50}") int maxTotal,
+                                           @Value("${upstream.pool.max-per-route:50}") int maxPerRoute,
+                                           @Value("${upstream.connect-timeout:2000}") int connectTimeout,
+                                           @Value("${upstream.read-timeout:5000}") int readTimeout) {
+        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setMaxTotal(maxTotal);
+        connectionManager.setDefaultMaxPerRoute(maxPerRoute);
+        RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectTimeout(connectTimeout)
+                .setConnectionRequestTimeout(connectTimeout)
+                .setSocketTimeout(readTimeout)
+                .build();
+        return HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(requestConfig)
+                .setKeepAliveStrategy(DefaultConnectionKeepAliveStrategy.INSTANCE)
+                .evictIdleConnections(30, TimeUnit.SECONDS)
+                .build();
+    }
+
+    /**
+     * Executor for work started from Vaadin views, so servlet threads are released right after a click.
+     * Uses virtual threads when the JDK provides them, otherwise a bounded pool that rejects work when saturated.
+     */
+    @Bean(destroyMethod = "shutdown")
+    ExecutorService uiExecutor(@Value("${ui.executor.threads:16}") int threads,
+                               @Value("${ui.executor.queue-capacity:256}") int queueCapacity) {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                    new ArrayBlockingQueue<>(queueCapacity));
+        }
+    }
+
+    /**
+     * Runs upstream work that callers wait for, such as single requests with a deadline or batch loads that in turn
+     * wait for {@code upstreamExecutor}. Unbounded, because the work is already limited by the per-endpoint
+     * bulkheads and the batch limit.
+     */
+    @Bean(destroyMethod = "shutdown")
+    ExecutorService upstreamCallExecutor() {
+        return Executors.newCachedThreadPool();
+    }
+
+    @Bean(destroyMethod = "shutdown")
+    ExecutorService upstreamExecutor(@Value("${upstream.executor.threads:8}") int threads) {
+        return Executors.newFixedThreadPool(threads);
     }
 }
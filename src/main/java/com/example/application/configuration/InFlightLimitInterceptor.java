@@ -0,0 +1,42 @@
+package com.example.application.configuration;
+
+import com.example.application.utils.ClosingClientHttpResponse;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Caps the number of upstream requests executing at the same time, so that bursts of sessions
+ * queue here instead of overwhelming json-server. A permit is held until the response is closed,
+ * i.e. until its body has been read.
+ */
+class InFlightLimitInterceptor implements ClientHttpRequestInterceptor {
+
+    private final Semaphore permits;
+
+    InFlightLimitInterceptor(int maxInFlight) {
+        this.permits = new Semaphore(maxInFlight);
+    }
+
+    @Override
+    public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution)
+            throws IOException {
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for an upstream request slot");
+        }
+        try {
+            return new ClosingClientHttpResponse(execution.execute(request, body), permits::release);
+        } catch (IOException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+}
@@ -1,16 +1,259 @@
 package com.example.application.controller;
 
-import org.springframework.web.bind.annotation.RestController;
-import org.springframework.web.client.RestTemplate;
+import com.example.application.SearchTerm;
+import com.example.application.data.ExportFormat;
+import com.example.application.data.Service;
+import com.example.application.model.Flight;
+import com.example.application.model.FlightWeights;
+import com.example.application.model.RankedAirport;
+import com.example.application.model.RankedFlight;
+import com.example.application.model.StatisticsBucket;
+import com.example.application.utils.FlightNotFoundException;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPOutputStream;
 
 @RestController
+@RequestMapping("/api")
 public class Controller {
 
-    private final RestTemplate restTemplate;
+    /**
+     * Part of the statistics ETags, so that a restarted instance, whose statistics version starts over, does not
+     * answer 304 to a tag issued before the restart.
+     */
+    private final String instanceId = UUID.randomUUID().toString();
+    private final Service service;
+
+    public Controller(Service service) {
+        this.service = service;
+    }
+
+    @GetMapping(value = "/flights", params = "flightNumber")
+    public Flight getFlightByFlightNumber(@RequestParam int flightNumber) throws FlightNotFoundException {
+        return service.findFlightByFlightNumber(flightNumber);
+    }
+
+    @GetMapping(value = "/flights", params = "date")
+    public Flight getFlightByDate(@RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+                                          OffsetDateTime date) throws FlightNotFoundException {
+        return service.findFlightByDepartureDate(date);
+    }
+
+    @GetMapping("/flights/{flightNumber}/weights")
+    public FlightWeights getWeights(@PathVariable int flightNumber) throws FlightNotFoundException {
+        return service.getWeights(service.findFlightDetails(flightWithNumber(flightNumber), SearchTerm.FLIGHT_NUMBER));
+    }
+
+    /**
+     * Weights of many flights, answered from known weights and batched details requests. Answers 404 naming
+     * the flight numbers that cannot be found and 503 when details cannot be loaded.
+     */
+    @GetMapping("/flights/weights")
+    public Map<Integer, FlightWeights> getWeights(@RequestParam List<Integer> flightNumber)
+            throws FlightNotFoundException {
+        return service.getWeightsByFlightNumber(flightNumber);
+    }
+
+    /**
+     * Every flight with its weights in kilograms, streamed as NDJSON or CSV and gzip-compressed when the client
+     * accepts it.
+     */
+    @GetMapping("/flights/export")
+    public ResponseEntity<StreamingResponseBody> exportFlights(@RequestParam(defaultValue = "NDJSON")
+                                                                       ExportFormat format,
+                                                               @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING,
+                                                                       required = false) String acceptEncoding) {
+        boolean gzip = acceptsGzip(acceptEncoding);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(format.getContentType()))
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=flights." + format.getExtension());
+        if (!gzip)
+            return response.body(outputStream -> service.exportFlights(format, outputStream));
+        return response.header(HttpHeaders.CONTENT_ENCODING, "gzip").body(outputStream -> {
+            GZIPOutputStream gzipStream = new GZIPOutputStream(outputStream, 8192);
+            service.exportFlights(format, gzipStream);
+            gzipStream.finish();
+        });
+    }
+
+    @GetMapping("/airports/{code}/statistics")
+    public Map<String, Integer> getFlightsStatistics(@PathVariable String code,
+                                                     @RequestParam(required = false)
+                                                     @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+                                                             OffsetDateTime date,
+                                                     WebRequest request) {
+        if (request.checkNotModified(statisticsETag()))
+            return null;
+        return service.getFlightsStatistics(code, date);
+    }
 
-    public Controller(RestTemplate restTemplate) {
-        this.restTemplate = restTemplate;
+    @GetMapping(value = "/airports/{code}/statistics", params = {"from", "to"})
+    public Map<String, Integer> getFlightsStatistics(@PathVariable String code,
+                                                     @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+                                                             OffsetDateTime from,
+                                                     @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+                                                             OffsetDateTime to,
+                                                     WebRequest request) {
+        if (request.checkNotModified(statisticsETag()))
+            return null;
+        return service.getFlightsStatistics(code, from.toInstant(), to.toInstant());
     }
 
+    @GetMapping("/airports/{code}/histogram")
+    public List<StatisticsBucket> getFlightsHistogram(@PathVariable String code,
+                                                      @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+                                                              OffsetDateTime from,
+                                                      @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+                                                              OffsetDateTime to,
+                                                      @RequestParam(defaultValue = "HOURS") ChronoUnit bucket,
+                                                      WebRequest request) {
+        if (request.checkNotModified(statisticsETag()))
+            return null;
+        return service.getFlightsHistogram(code, from.toInstant(), to.toInstant(), bucket);
+    }
+
+    @GetMapping(value = "/airports/statistics", params = "code")
+    public Map<String, Map<String, Integer>> getFlightsStatistics(@RequestParam List<String> code,
+                                                                  @RequestParam(required = false)
+                                                                  @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+                                                                          OffsetDateTime date,
+                                                                  WebRequest request) {
+        if (request.checkNotModified(statisticsETag()))
+            return null;
+        Map<String, Map<String, Integer>> statistics = new LinkedHashMap<>();
+        code.forEach(airportCode -> statistics.put(airportCode, service.getFlightsStatistics(airportCode, date)));
+        return statistics;
+    }
+
+    /**
+     * Statistics of every airport, of all flights or of flights departing within {@code [from, to)}.
+     */
+    @GetMapping(value = "/airports/statistics", params = "!code")
+    public List<RankedAirport> getAllAirportsStatistics(@RequestParam(required = false)
+                                                        @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+                                                                OffsetDateTime from,
+                                                        @RequestParam(required = false)
+                                                        @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+                                                                OffsetDateTime to,
+                                                        WebRequest request) {
+        if (request.checkNotModified(statisticsETag()))
+            return null;
+        return service.getAllAirportsStatistics(from != null ? from.toInstant() : null,
+                to != null ? to.toInstant() : null);
+    }
 
+    /**
+     * Heaviest departures within {@code [from, to)}, today (UTC) when no range is given.
+     */
+    @GetMapping("/leaderboards/heaviest-departures")
+    public List<RankedFlight> getHeaviestDepartures(@RequestParam(required = false) String code,
+                                                    @RequestParam(required = false)
+                                                    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+                                                            OffsetDateTime from,
+                                                    @RequestParam(required = false)
+                                                    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+                                                            OffsetDateTime to,
+                                                    @RequestParam(defaultValue = "20") int limit) {
+        Instant today = Instant.now().truncatedTo(ChronoUnit.DAYS);
+        return service.getHeaviestDepartures(code, from != null ? from.toInstant() : today,
+                to != null ? to.toInstant() : today.plus(1, ChronoUnit.DAYS), limit);
+    }
+
+    /**
+     * Airports with the most baggage pieces of all time, or of flights departing within {@code [from, to)}.
+     */
+    @GetMapping("/leaderboards/busiest-airports")
+    public List<RankedAirport> getBusiestAirports(@RequestParam(required = false)
+                                                  @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+                                                          OffsetDateTime from,
+                                                  @RequestParam(required = false)
+                                                  @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+                                                          OffsetDateTime to,
+                                                  @RequestParam(defaultValue = "20") int limit) {
+        return service.getBusiestAirports(from != null ? from.toInstant() : null,
+                to != null ? to.toInstant() : null, limit);
+    }
+
+    @GetMapping("/suggest/flight-numbers")
+    public List<Integer> suggestFlightNumbers(@RequestParam(defaultValue = "") String prefix,
+                                              @RequestParam(defaultValue = "10") int limit) {
+        return service.suggestFlightNumbers(prefix, 0, limit).collect(Collectors.toList());
+    }
+
+    @GetMapping("/suggest/airport-codes")
+    public List<String> suggestAirportCodes(@RequestParam(defaultValue = "") String prefix,
+                                            @RequestParam(defaultValue = "10") int limit) {
+        return service.suggestAirportCodes(prefix, 0, limit).collect(Collectors.toList());
+    }
+
+    @ExceptionHandler(FlightNotFoundException.class)
+    public ResponseEntity<String> flightNotFound(FlightNotFoundException e) {
+        return ResponseEntity.status(HttpStatus.NOT_FOUND).body(e.getMessage());
+    }
+
+    @ExceptionHandler(RestClientException.class)
+    public ResponseEntity<String> upstreamUnavailable(RestClientException e) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(e.getMessage());
+    }
+
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<String> badRequest(IllegalArgumentException e) {
+        return ResponseEntity.badRequest().body(e.getMessage());
+    }
+
+    private String statisticsETag() {
+        return "\"statistics-" + instanceId + "-" + service.getStatisticsVersion() + "\"";
+    }
+
+    /**
+     * @return whether the {@code Accept-Encoding} header allows gzip with a non-zero quality, either by name or,
+     * when gzip is not listed, through {@code *}
+     */
+    static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null)
+            return false;
+        Double gzip = null;
+        Double any = null;
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.split(";");
+            String name = parts[0].trim().toLowerCase(Locale.ROOT);
+            double quality = 1;
+            for (int i = 1; i < parts.length; i++) {
+                String parameter = parts[i].trim();
+                if (parameter.startsWith("q=") || parameter.startsWith("Q=")) {
+                    try {
+                        quality = Double.parseDouble(parameter.substring(2).trim());
+                    } catch (NumberFormatException e) {
+                        quality = 0;
+                    }
+                }
+            }
+            if (name.equals("gzip") || name.equals("x-gzip"))
+                gzip = gzip != null ? Math.max(gzip, quality) : quality;
+            else if (name.equals("*"))
+                any = quality;
+        }
+        if (gzip != null)
+            return gzip > 0;
+        return any != null && any > 0;
+    }
+
+    private static Flight flightWithNumber(int flightNumber) {
+        Flight flight = new Flight();
+        flight.setFlightNumber(flightNumber);
+        return flight;
+    }
 }
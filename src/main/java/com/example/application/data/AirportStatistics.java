@@ -0,0 +1,53 @@
+package com.example.application.data;
+
+import com.example.application.model.RankedAirport;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Mutable departure/arrival counters of a single airport, optionally narrowed to one departure date.
+ * Instances are owned by {@link StatisticsIndex} and only touched while holding its lock.
+ */
+class AirportStatistics {
+
+    private int departures;
+    private int arrivals;
+    private int baggageArriving;
+    private int baggageDeparting;
+
+    void addDeparture(int sign, int baggagePieces) {
+        departures += sign;
+        baggageDeparting += sign * baggagePieces;
+    }
+
+    void addArrival(int sign, int baggagePieces) {
+        arrivals += sign;
+        baggageArriving += sign * baggagePieces;
+    }
+
+    void addDepartingBaggage(int baggagePieces) {
+        baggageDeparting += baggagePieces;
+    }
+
+    void addArrivingBaggage(int baggagePieces) {
+        baggageArriving += baggagePieces;
+    }
+
+    RankedAirport toRankedAirport(String code) {
+        return new RankedAirport(code, departures, arrivals, baggageDeparting, baggageArriving);
+    }
+
+    boolean isEmpty() {
+        return departures == 0 && arrivals == 0;
+    }
+
+    Map<String, Integer> toMap() {
+        Map<String, Integer> flightsStatistics = new HashMap<>();
+        flightsStatistics.put("departures", departures);
+        flightsStatistics.put("arrivals", arrivals);
+        flightsStatistics.put("baggageArriving", baggageArriving);
+        flightsStatistics.put("baggageDeparting", baggageDeparting);
+        return flightsStatistics;
+    }
+}
@@ -0,0 +1,108 @@
+package com.example.application.data;
+
+import com.example.application.model.RankedAirport;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Departures, arrivals and baggage pieces of every airport in one parallel pass over the catalog. The flights are
+ * split into ranges counted by fork/join tasks, each into its own {@code int} array indexed by airport, and the
+ * arrays are summed as the tasks join, so the work grows with the number of flights rather than with flights
+ * times airports. Rows are read straight from the catalog's {@link FlightColumns}, with airports addressed by
+ * their position in the sorted codes, so no {@link com.example.application.model.Flight} objects are created.
+ */
+final class AirportStatisticsTask extends RecursiveTask<int[]> {
+
+    private static final int THRESHOLD = 8192;
+
+    private static final int DEPARTURES = 0;
+    private static final int ARRIVALS = 1;
+    private static final int BAGGAGE_DEPARTING = 2;
+    private static final int BAGGAGE_ARRIVING = 3;
+    private static final int FIELDS = 4;
+
+    private final FlightCatalog catalog;
+    private final IntUnaryOperator rows;
+    private final StatisticsIndex statisticsIndex;
+    private final int from;
+    private final int to;
+
+    private AirportStatisticsTask(FlightCatalog catalog, IntUnaryOperator rows, StatisticsIndex statisticsIndex,
+                                  int from, int to) {
+        this.catalog = catalog;
+        this.rows = rows;
+        this.statisticsIndex = statisticsIndex;
+        this.from = from;
+        this.to = to;
+    }
+
+    /**
+     * Statistics of all flights, or of flights departing within {@code [from, to)} when both are given.
+     * Arrivals are matched by departure date and only {@link FlightCatalog#isCanonical(int) canonical} rows are
+     * counted, like the single-airport statistics.
+     *
+     * @return one entry per airport code, in code order
+     */
+    static List<RankedAirport> compute(FlightCatalog catalog, StatisticsIndex statisticsIndex, Instant from,
+                                       Instant to) {
+        String[] codes = catalog.getAirportCodes().toArray(new String[0]);
+        AirportStatisticsTask task;
+        if (from == null || to == null) {
+            task = new AirportStatisticsTask(catalog, row -> row, statisticsIndex, 0, catalog.getColumns().size());
+        } else {
+            int first = catalog.departureIndex(Service.ceilEpochSecond(from));
+            int end = Math.max(first, catalog.departureIndex(Service.ceilEpochSecond(to)));
+            task = new AirportStatisticsTask(catalog, catalog::departureRow, statisticsIndex, first, end);
+        }
+        int[] counts = ForkJoinPool.commonPool().invoke(task);
+
+        List<RankedAirport> statistics = new ArrayList<>(codes.length);
+        for (int i = 0; i < codes.length; i++) {
+            int offset = i * FIELDS;
+            statistics.add(new RankedAirport(codes[i], counts[offset + DEPARTURES], counts[offset + ARRIVALS],
+                    counts[offset + BAGGAGE_DEPARTING], counts[offset + BAGGAGE_ARRIVING]));
+        }
+        return statistics;
+    }
+
+    @Override
+    protected int[] compute() {
+        if (to - from <= THRESHOLD)
+            return count();
+        int middle = (from + to) >>> 1;
+        AirportStatisticsTask left = new AirportStatisticsTask(catalog, rows, statisticsIndex, from, middle);
+        left.fork();
+        int[] counts = new AirportStatisticsTask(catalog, rows, statisticsIndex, middle, to).compute();
+        int[] leftCounts = left.join();
+        for (int i = 0; i < counts.length; i++)
+            counts[i] += leftCounts[i];
+        return counts;
+    }
+
+    private int[] count() {
+        FlightColumns columns = catalog.getColumns();
+        int[] counts = new int[catalog.getAirportCodes().size() * FIELDS];
+        for (int i = from; i < to; i++) {
+            int row = rows.applyAsInt(i);
+            if (!catalog.isCanonical(row))
+                continue;
+            int pieces = statisticsIndex.getBaggagePieces(catalog, row);
+            int departure = catalog.codeRank(columns.departureCode(row));
+            if (departure >= 0) {
+                counts[departure * FIELDS + DEPARTURES]++;
+                counts[departure * FIELDS + BAGGAGE_DEPARTING] += pieces;
+            }
+            int arrival = catalog.codeRank(columns.arrivalCode(row));
+            if (arrival >= 0) {
+                counts[arrival * FIELDS + ARRIVALS]++;
+                counts[arrival * FIELDS + BAGGAGE_ARRIVING] += pieces;
+            }
+        }
+        return counts;
+    }
+}
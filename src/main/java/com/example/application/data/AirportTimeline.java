@@ -0,0 +1,55 @@
+package com.example.application.data;
+
+/**
+ * Departure epoch seconds of one airport's departing or arriving flights, sorted ascending, with the flights' rows
+ * in the catalog's {@link FlightColumns} in a parallel array. Range counts are two binary searches; the flights of
+ * a range are a contiguous slice.
+ */
+final class AirportTimeline {
+
+    static final AirportTimeline EMPTY = new AirportTimeline(new long[0], new int[0]);
+
+    private final long[] epochSeconds;
+    private final int[] rows;
+
+    private AirportTimeline(long[] epochSeconds, int[] rows) {
+        this.epochSeconds = epochSeconds;
+        this.rows = rows;
+    }
+
+    /**
+     * @param epochSeconds departure epoch seconds sorted ascending
+     * @param rows         rows of the flights in the same order
+     */
+    static AirportTimeline of(long[] epochSeconds, int[] rows) {
+        return new AirportTimeline(epochSeconds, rows);
+    }
+
+    int size() {
+        return epochSeconds.length;
+    }
+
+    /**
+     * @return index of the first flight departing at or after the given epoch second
+     */
+    int lowerBound(long epochSecond) {
+        return lowerBound(epochSeconds, epochSecond);
+    }
+
+    int row(int index) {
+        return rows[index];
+    }
+
+    static int lowerBound(long[] sorted, long key) {
+        int low = 0;
+        int high = sorted.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (sorted[middle] < key)
+                low = middle + 1;
+            else
+                high = middle;
+        }
+        return low;
+    }
+}
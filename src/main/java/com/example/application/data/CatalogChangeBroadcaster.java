@@ -0,0 +1,39 @@
+package com.example.application.data;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Notifies open views of catalog changes. Listeners are called on the refresh thread and must hand the
+ * actual work over, views do so with {@code UI.access}.
+ */
+@Component
+class CatalogChangeBroadcaster {
+
+    private static final Logger log = LoggerFactory.getLogger(CatalogChangeBroadcaster.class);
+
+    private final List<Consumer<CatalogChanges>> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * @return action removing the listener again
+     */
+    Runnable register(Consumer<CatalogChanges> listener) {
+        listeners.add(listener);
+        return () -> listeners.remove(listener);
+    }
+
+    void broadcast(CatalogChanges changes) {
+        for (Consumer<CatalogChanges> listener : listeners) {
+            try {
+                listener.accept(changes);
+            } catch (RuntimeException e) {
+                log.warn("Catalog change listener failed: {}", e.toString());
+            }
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.application.data;
+
+import com.example.application.model.Flight;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Flights added, changed or removed by one catalog refresh, and the ids of flights whose details changed.
+ */
+public final class CatalogChanges {
+
+    static final CatalogChanges NONE = new CatalogChanges(Collections.emptyList(), Collections.emptyList(),
+            Collections.emptyList(), Collections.emptySet());
+
+    private final List<Flight> added;
+    private final List<Flight> changed;
+    private final List<Flight> removed;
+    private final Set<Integer> changedDetails;
+
+    CatalogChanges(List<Flight> added, List<Flight> changed, List<Flight> removed, Set<Integer> changedDetails) {
+        this.added = Collections.unmodifiableList(added);
+        this.changed = Collections.unmodifiableList(changed);
+        this.removed = Collections.unmodifiableList(removed);
+        this.changedDetails = Collections.unmodifiableSet(changedDetails);
+    }
+
+    CatalogChanges withChangedDetails(Set<Integer> changedDetails) {
+        return new CatalogChanges(added, changed, removed, changedDetails);
+    }
+
+    public List<Flight> getAdded() {
+        return added;
+    }
+
+    public List<Flight> getChanged() {
+        return changed;
+    }
+
+    public List<Flight> getRemoved() {
+        return removed;
+    }
+
+    public Set<Integer> getChangedDetails() {
+        return changedDetails;
+    }
+
+    public boolean hasFlightChanges() {
+        return !added.isEmpty() || !changed.isEmpty() || !removed.isEmpty();
+    }
+
+    public boolean isEmpty() {
+        return !hasFlightChanges() && changedDetails.isEmpty();
+    }
+}
@@ -0,0 +1,273 @@
+package com.example.application.data;
+
+import com.example.application.model.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.*;
+
+/**
+ * Last known catalog persisted as a compact binary file ({@code catalog.snapshot.path}), so the application can
+ * serve the grid and statistics right after a restart, before or without json-server answering.
+ * <p>
+ * Layout, big-endian: a 16 byte header (magic, format version, flight count, item count), then one 48 byte
+ * record per flight (id, flight number, two 4 byte ASCII airport codes, flags, departure epoch second, offset
+ * seconds, baggage pieces or -1 when unknown, cargo, baggage and total weight in hundredths of a kilogram), then
+ * one 20 byte record per baggage or cargo item of the last known details (flight id, kind, unit, id, weight,
+ * pieces). Pieces and weights come from the {@link StatisticsIndex}, so they survive a restart even for flights
+ * whose details were evicted. The file is read through a memory-mapped buffer.
+ */
+@Component
+class CatalogSnapshotFile {
+
+    private static final Logger log = LoggerFactory.getLogger(CatalogSnapshotFile.class);
+
+    private static final int MAGIC = 0x41495250;
+    private static final int FORMAT_VERSION = 2;
+    private static final int CODE_BYTES = 4;
+
+    private static final int HAS_ID = 1;
+    private static final int HAS_FLIGHT_NUMBER = 1 << 1;
+    private static final int HAS_DEPARTURE_DATE = 1 << 2;
+    private static final int HAS_DETAILS = 1 << 3;
+
+    private static final byte BAGGAGE = 0;
+    private static final byte CARGO = 1;
+    private static final WeightUnit[] WEIGHT_UNITS = WeightUnit.values();
+
+    private final Path path;
+
+    CatalogSnapshotFile(@Value("${catalog.snapshot.path:}") String path) {
+        this.path = path.isEmpty() ? null : Paths.get(path);
+    }
+
+    /**
+     * Takes the details of the flights once, so entries changing in the live map while the file is written
+     * cannot make the item count, the flags and the items disagree.
+     *
+     * @param details         last known details, whose items are written
+     * @param statisticsIndex source of the baggage pieces and weights of the flights
+     */
+    void write(List<Flight> flights, Map<Integer, FlightDetails> details, StatisticsIndex statisticsIndex)
+            throws IOException {
+        if (path == null)
+            return;
+        Map<Integer, FlightDetails> written = new HashMap<>();
+        int itemCount = 0;
+        for (Flight flight : flights) {
+            FlightDetails flightDetails = flight.getId() != null ? details.get(flight.getId()) : null;
+            if (flightDetails != null && written.putIfAbsent(flight.getId(), flightDetails) == null)
+                itemCount += flightDetails.getBaggage().size() + flightDetails.getCargo().size();
+        }
+        if (path.toAbsolutePath().getParent() != null)
+            Files.createDirectories(path.toAbsolutePath().getParent());
+        Path temporary = Files.createTempFile(path.toAbsolutePath().getParent(), "catalog", ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(flights.size());
+            out.writeInt(itemCount);
+            for (Flight flight : flights) {
+                StatisticsIndex.Totals totals = flight.getId() != null ? statisticsIndex.getTotals(flight.getId())
+                        : null;
+                writeFlight(out, flight, flight.getId() != null && written.containsKey(flight.getId()), totals);
+            }
+            for (Map.Entry<Integer, FlightDetails> entry : written.entrySet()) {
+                for (Baggage baggage : entry.getValue().getBaggage())
+                    writeItem(out, entry.getKey(), BAGGAGE, baggage.getId(), baggage.getWeight(),
+                            baggage.getWeightUnit(), baggage.getPieces());
+                for (Cargo cargo : entry.getValue().getCargo())
+                    writeItem(out, entry.getKey(), CARGO, cargo.getId(), cargo.getWeight(), cargo.getWeightUnit(),
+                            cargo.getPieces());
+            }
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temporary);
+            throw e;
+        }
+        Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    Optional<Snapshot> read() {
+        if (path == null || !Files.isRegularFile(path))
+            return Optional.empty();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION) {
+                log.warn("Ignoring catalog snapshot {} with unknown format", path);
+                return Optional.empty();
+            }
+            int flightCount = buffer.getInt();
+            int itemCount = buffer.getInt();
+
+            FlightCatalog.Builder catalog = FlightCatalog.builder();
+            Map<Integer, Integer> baggagePieces = new HashMap<>();
+            Map<Integer, FlightWeights> weights = new HashMap<>();
+            Set<Integer> withDetails = new LinkedHashSet<>();
+            byte[] code = new byte[CODE_BYTES];
+            for (int i = 0; i < flightCount; i++) {
+                int id = buffer.getInt();
+                int flightNumber = buffer.getInt();
+                String departureCode = readCode(buffer, code);
+                String arrivalCode = readCode(buffer, code);
+                int flags = buffer.getShort();
+                buffer.getShort();
+                long epochSecond = buffer.getLong();
+                int offsetSeconds = buffer.getInt();
+                int pieces = buffer.getInt();
+                int cargoWeight = buffer.getInt();
+                int baggageWeight = buffer.getInt();
+                int totalWeight = buffer.getInt();
+
+                OffsetDateTime departureDate = (flags & HAS_DEPARTURE_DATE) != 0 ? OffsetDateTime.ofInstant(
+                        Instant.ofEpochSecond(epochSecond), ZoneOffset.ofTotalSeconds(offsetSeconds)) : null;
+                catalog.add(new Flight((flags & HAS_ID) != 0 ? id : null,
+                        (flags & HAS_FLIGHT_NUMBER) != 0 ? flightNumber : null,
+                        departureCode, arrivalCode, departureDate));
+                if ((flags & HAS_ID) != 0 && pieces >= 0) {
+                    baggagePieces.put(id, pieces);
+                    weights.put(id, new FlightWeights(cargoWeight / 100.0, baggageWeight / 100.0,
+                            totalWeight / 100.0));
+                }
+                if ((flags & HAS_ID) != 0 && (flags & HAS_DETAILS) != 0)
+                    withDetails.add(id);
+            }
+
+            Map<Integer, List<Baggage>> baggage = new HashMap<>();
+            Map<Integer, List<Cargo>> cargo = new HashMap<>();
+            for (int i = 0; i < itemCount; i++) {
+                int flightId = buffer.getInt();
+                byte kind = buffer.get();
+                WeightUnit weightUnit = WEIGHT_UNITS[buffer.get()];
+                buffer.getShort();
+                int id = buffer.getInt();
+                int weight = buffer.getInt();
+                int pieces = buffer.getInt();
+                if (kind == BAGGAGE)
+                    baggage.computeIfAbsent(flightId, key -> new ArrayList<>())
+                            .add(new Baggage(id, weight, weightUnit, pieces));
+                else
+                    cargo.computeIfAbsent(flightId, key -> new ArrayList<>())
+                            .add(new Cargo(id, weight, weightUnit, pieces));
+            }
+            List<FlightDetails> details = new ArrayList<>(withDetails.size());
+            for (Integer flightId : withDetails)
+                details.add(new FlightDetails(flightId, baggage.getOrDefault(flightId, new ArrayList<>()),
+                        cargo.getOrDefault(flightId, new ArrayList<>())));
+            return Optional.of(new Snapshot(catalog.build(), details, baggagePieces, weights));
+        } catch (IOException | BufferUnderflowException | IndexOutOfBoundsException e) {
+            log.warn("Could not read catalog snapshot {}: {}", path, e.toString());
+            return Optional.empty();
+        }
+    }
+
+    private static void writeFlight(DataOutputStream out, Flight flight, boolean hasDetails,
+                                    StatisticsIndex.Totals totals) throws IOException {
+        FlightWeights weights = totals != null ? totals.getWeights() : null;
+        int flags = (flight.getId() != null ? HAS_ID : 0)
+                | (flight.getFlightNumber() != null ? HAS_FLIGHT_NUMBER : 0)
+                | (flight.getDepartureDate() != null ? HAS_DEPARTURE_DATE : 0)
+                | (hasDetails ? HAS_DETAILS : 0);
+        out.writeInt(flight.getId() != null ? flight.getId() : 0);
+        out.writeInt(flight.getFlightNumber() != null ? flight.getFlightNumber() : 0);
+        writeCode(out, flight.getDepartureAirportIATACode());
+        writeCode(out, flight.getArrivalAirportIATACode());
+        out.writeShort(flags);
+        out.writeShort(0);
+        out.writeLong(flight.getDepartureDate() != null ? flight.getDepartureDate().toEpochSecond() : 0);
+        out.writeInt(flight.getDepartureDate() != null ? flight.getDepartureDate().getOffset().getTotalSeconds() : 0);
+        out.writeInt(totals != null ? totals.getPieces() : -1);
+        out.writeInt(weights != null ? hundredths(weights.getCargo()) : 0);
+        out.writeInt(weights != null ? hundredths(weights.getBaggage()) : 0);
+        out.writeInt(weights != null ? hundredths(weights.getTotal()) : 0);
+    }
+
+    /**
+     * {@link FlightWeights} are rounded to two decimals, so the conversion is exact.
+     */
+    private static int hundredths(double kilograms) {
+        return Math.toIntExact(Math.round(kilograms * 100));
+    }
+
+    private static void writeItem(DataOutputStream out, int flightId, byte kind, int id, int weight,
+                                  WeightUnit weightUnit, int pieces) throws IOException {
+        out.writeInt(flightId);
+        out.writeByte(kind);
+        out.writeByte((weightUnit != null ? weightUnit : WeightUnit.KG).ordinal());
+        out.writeShort(0);
+        out.writeInt(id);
+        out.writeInt(weight);
+        out.writeInt(pieces);
+    }
+
+    private static void writeCode(DataOutputStream out, String code) throws IOException {
+        byte[] bytes = code != null ? code.getBytes(StandardCharsets.US_ASCII) : new byte[0];
+        if (bytes.length > CODE_BYTES)
+            throw new IOException("Airport code does not fit the snapshot format: " + code);
+        out.write(bytes);
+        for (int i = bytes.length; i < CODE_BYTES; i++)
+            out.writeByte(0);
+    }
+
+    private static String readCode(MappedByteBuffer buffer, byte[] code) {
+        buffer.get(code);
+        int length = 0;
+        while (length < CODE_BYTES && code[length] != 0)
+            length++;
+        return length > 0 ? new String(code, 0, length, StandardCharsets.US_ASCII) : null;
+    }
+
+    static final class Snapshot {
+
+        private final FlightCatalog catalog;
+        private final List<FlightDetails> details;
+        private final Map<Integer, Integer> baggagePieces;
+        private final Map<Integer, FlightWeights> weights;
+
+        private Snapshot(FlightCatalog catalog, List<FlightDetails> details, Map<Integer, Integer> baggagePieces,
+                         Map<Integer, FlightWeights> weights) {
+            this.catalog = catalog;
+            this.details = details;
+            this.baggagePieces = baggagePieces;
+            this.weights = weights;
+        }
+
+        FlightCatalog getCatalog() {
+            return catalog;
+        }
+
+        List<FlightDetails> getDetails() {
+            return details;
+        }
+
+        /**
+         * @return baggage pieces of the flights with known details, keyed by flight id
+         */
+        Map<Integer, Integer> getBaggagePieces() {
+            return baggagePieces;
+        }
+
+        /**
+         * @return weights of the flights with known details, keyed by flight id
+         */
+        Map<Integer, FlightWeights> getWeights() {
+            return weights;
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.example.application.data;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+
+/**
+ * Typed start of an ISO-8601 date-time as {@link OffsetDateTime#toString()} prints it, turned into a range of
+ * local date-times so matching dates can be found by binary search instead of printing every date.
+ * <p>
+ * Up to the minutes ({@code uuuu-MM-ddTHH:mm}) the text always has the same shape, so a prefix of it fixes the
+ * leading digits of {@code uuuuMMddHHmm}: the dates matching it are those whose digits lie between the prefix
+ * padded with zeros and the prefix padded with nines. Longer prefixes, which reach the optional seconds and the
+ * offset, are narrowed to the minute first and then compared as text.
+ */
+final class DateTimePrefix {
+
+    private static final String SHAPE = "dddd-dd-ddTdd:dd";
+    private static final int[] MIN = {0, 1, 1, 0, 0};
+    private static final int[] MAX = {9999, 12, 31, 23, 59};
+
+    private final String text;
+    private final long minDigits;
+    private final long maxDigits;
+
+    private DateTimePrefix(String text, long minDigits, long maxDigits) {
+        this.text = text;
+        this.minDigits = minDigits;
+        this.maxDigits = maxDigits;
+    }
+
+    /**
+     * @return the prefix, or {@code null} when no date-time of years 0 to 9999 starts with the text
+     */
+    static DateTimePrefix parse(String text) {
+        long minDigits = 0;
+        long maxDigits = 0;
+        for (int i = 0; i < SHAPE.length(); i++) {
+            char expected = SHAPE.charAt(i);
+            char typed = i < text.length() ? text.charAt(i) : expected;
+            if (expected != 'd') {
+                if (typed != expected)
+                    return null;
+                continue;
+            }
+            if (i < text.length() && (typed < '0' || typed > '9'))
+                return null;
+            minDigits = minDigits * 10 + (i < text.length() ? typed - '0' : 0);
+            maxDigits = maxDigits * 10 + (i < text.length() ? typed - '0' : 9);
+        }
+        return new DateTimePrefix(text, minDigits, maxDigits);
+    }
+
+    /**
+     * @return local epoch second, i.e. the local date-time read as UTC, at or before the first matching date-time
+     */
+    long fromLocalSecond() {
+        int[] fields = fields(minDigits);
+        for (int i = 1; i < fields.length; i++) {
+            if (fields[i] < MIN[i]) {
+                for (int j = i; j < fields.length; j++)
+                    fields[j] = MIN[j];
+                break;
+            }
+            fields[i] = Math.min(fields[i], max(fields, i));
+        }
+        return localSecond(fields, 0);
+    }
+
+    /**
+     * @return local epoch second at or after the last matching date-time
+     */
+    long toLocalSecond() {
+        int[] fields = fields(maxDigits);
+        for (int i = 1; i < fields.length; i++) {
+            if (fields[i] > max(fields, i)) {
+                for (int j = i; j < fields.length; j++)
+                    fields[j] = max(fields, j);
+                break;
+            }
+            fields[i] = Math.max(fields[i], MIN[i]);
+        }
+        return localSecond(fields, 59);
+    }
+
+    boolean matches(long epochSecond, int offsetSeconds) {
+        if (text.length() > SHAPE.length())
+            return OffsetDateTime.ofInstant(Instant.ofEpochSecond(epochSecond),
+                    ZoneOffset.ofTotalSeconds(offsetSeconds)).toString().startsWith(text);
+        LocalDateTime local = LocalDateTime.ofEpochSecond(epochSecond, 0, ZoneOffset.ofTotalSeconds(offsetSeconds));
+        long digits = local.getYear() * 100_000_000L + local.getMonthValue() * 1_000_000L
+                + local.getDayOfMonth() * 10_000L + local.getHour() * 100L + local.getMinute();
+        return local.getYear() >= 0 && local.getYear() <= MAX[0] && digits >= minDigits && digits <= maxDigits;
+    }
+
+    /**
+     * @return year, month, day, hour and minute of {@code uuuuMMddHHmm} digits, not necessarily valid
+     */
+    private static int[] fields(long digits) {
+        return new int[]{(int) (digits / 100_000_000L), (int) (digits / 1_000_000L % 100),
+                (int) (digits / 10_000L % 100), (int) (digits / 100L % 100), (int) (digits % 100)};
+    }
+
+    private static int max(int[] fields, int index) {
+        return index == 2 ? YearMonth.of(fields[0], fields[1]).lengthOfMonth() : MAX[index];
+    }
+
+    private static long localSecond(int[] fields, int second) {
+        return LocalDateTime.of(fields[0], fields[1], fields[2], fields[3], fields[4], second)
+                .toEpochSecond(ZoneOffset.UTC);
+    }
+}
@@ -0,0 +1,424 @@
+package com.example.application.data;
+
+import com.example.application.model.Flight;
+import com.example.application.utils.IntIntMap;
+
+import java.time.OffsetDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+import java.util.function.IntToLongFunction;
+import java.util.function.IntUnaryOperator;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Immutable snapshot of the flight list together with the sets derived from it.
+ * A new instance is built for every refresh and published by {@link Repository} with a single reference swap,
+ * so readers always see a complete, consistent version without locking.
+ * <p>
+ * Flights are held in {@link FlightColumns} and every index refers to their rows. Lookups by id and flight number
+ * go through primitive hash indexes, lookups by departure date through departure epoch seconds sorted in a
+ * parallel array and searched with binary search. Row orders used for paging are built on first use per property
+ * and then reused for the lifetime of the snapshot. Each airport's departures and arrivals are also kept as
+ * {@link AirportTimeline}s for time-range queries. {@link Flight} objects are only created for the flights
+ * handed out.
+ */
+final class FlightCatalog {
+
+    static final FlightCatalog EMPTY = new FlightCatalog(Collections.emptyList());
+
+    private static final Set<String> SORT_PROPERTIES = Set.of("id", "flightNumber", "departureAirportIATACode",
+            "arrivalAirportIATACode", "departureDate");
+    private static final long NO_KEY = Long.MAX_VALUE;
+    private static final int MAX_OFFSET_SECONDS = 18 * 60 * 60;
+
+    private final FlightColumns columns;
+    private final List<Flight> flights;
+    private final SortedSet<String> airportCodes;
+    private final int[] codeRanks;
+    private final IntIntMap rowsById;
+    private final IntIntMap rowsByNumber;
+    private final int[] rowsByDeparture;
+    private final long[] departureEpochSeconds;
+    private final int[] departureDateRows;
+    private final Map<String, AirportTimeline> departureTimelines;
+    private final Map<String, AirportTimeline> arrivalTimelines;
+    private final SuggestIndex suggestIndex;
+    private final Map<String, int[]> sortedRows = new ConcurrentHashMap<>();
+
+    FlightCatalog(List<Flight> flights) {
+        this(builder().addAll(flights));
+    }
+
+    private FlightCatalog(Builder builder) {
+        columns = builder.columns.build();
+        flights = new FlightList(columns);
+        rowsById = builder.rowsById;
+        rowsByNumber = builder.rowsByNumber;
+
+        String[] codes = new String[columns.codeCount()];
+        for (int i = 0; i < codes.length; i++)
+            codes[i] = columns.code(i);
+        airportCodes = Collections.unmodifiableSortedSet(new TreeSet<>(Arrays.asList(codes)));
+        String[] sortedCodes = airportCodes.toArray(new String[0]);
+        codeRanks = new int[codes.length];
+        for (int i = 0; i < codes.length; i++)
+            codeRanks[i] = Arrays.binarySearch(sortedCodes, codes[i]);
+
+        int[] rowsByDate = sortRows(this::departureDateKey);
+        sortedRows.put("departureDate", rowsByDate);
+        int withDate = 0;
+        while (withDate < rowsByDate.length && columns.hasDepartureDate(rowsByDate[withDate]))
+            withDate++;
+        rowsByDeparture = Arrays.copyOf(rowsByDate, withDate);
+        departureEpochSeconds = new long[rowsByDeparture.length];
+        for (int i = 0; i < rowsByDeparture.length; i++)
+            departureEpochSeconds[i] = columns.departureEpochSecond(rowsByDeparture[i]);
+        departureDateRows = IntStream.range(0, rowsByDeparture.length)
+                .filter(i -> i == 0 || departureDateKey(rowsByDeparture[i]) != departureDateKey(rowsByDeparture[i - 1]))
+                .map(i -> rowsByDeparture[i])
+                .toArray();
+
+        departureTimelines = timelines(columns::departureCode);
+        arrivalTimelines = timelines(columns::arrivalCode);
+        suggestIndex = new SuggestIndex(IntStream.range(0, columns.size())
+                .filter(columns::hasFlightNumber)
+                .map(columns::flightNumber)
+                .sorted().distinct().toArray(), sortedCodes);
+    }
+
+    static Builder builder() {
+        return new Builder();
+    }
+
+    Optional<Flight> findById(int id) {
+        return flightAt(rowsById.get(id));
+    }
+
+    Optional<Flight> findByFlightNumber(int flightNumber) {
+        return flightAt(rowsByNumber.get(flightNumber));
+    }
+
+    Optional<Flight> findByDepartureDate(OffsetDateTime departureDate) {
+        if (departureDate.getNano() != 0)
+            return Optional.empty();
+        long epochSecond = departureDate.toEpochSecond();
+        int offsetSeconds = departureDate.getOffset().getTotalSeconds();
+        for (int i = AirportTimeline.lowerBound(departureEpochSeconds, epochSecond);
+             i < departureEpochSeconds.length && departureEpochSeconds[i] == epochSecond; i++) {
+            if (columns.offsetSeconds(rowsByDeparture[i]) == offsetSeconds)
+                return Optional.of(columns.flight(rowsByDeparture[i]));
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * @return flights with an id that were added, changed or removed compared to the previous catalog
+     */
+    CatalogChanges changesSince(FlightCatalog previous) {
+        List<Flight> added = new ArrayList<>();
+        List<Flight> changed = new ArrayList<>();
+        List<Flight> removed = new ArrayList<>();
+        forEachFlightWithId(flight -> {
+            int previousRow = previous.rowsById.get(flight.getId());
+            if (previousRow == IntIntMap.MISSING)
+                added.add(flight);
+            else if (!previous.columns.flight(previousRow).equals(flight))
+                changed.add(flight);
+        });
+        previous.forEachFlightWithId(flight -> {
+            if (rowsById.get(flight.getId()) == IntIntMap.MISSING)
+                removed.add(flight);
+        });
+        return new CatalogChanges(added, changed, removed, Collections.emptySet());
+    }
+
+    /**
+     * @return row in {@link #getColumns()} of the flight {@link #findById(int)} returns, or {@link IntIntMap#MISSING}
+     */
+    int rowOf(int id) {
+        return rowsById.get(id);
+    }
+
+    /**
+     * @return whether the row is the one {@link #rowOf(int)} returns for its id; rows without an id and later
+     * rows repeating an id are not, and are left out of every statistic
+     */
+    boolean isCanonical(int row) {
+        return columns.hasId(row) && rowsById.get(columns.id(row)) == row;
+    }
+
+    /**
+     * Visits, for every id in the catalog, the flight {@link #findById(int)} returns.
+     */
+    void forEachFlightWithId(Consumer<Flight> consumer) {
+        forEachRowWithId(row -> consumer.accept(columns.flight(row)));
+    }
+
+    /**
+     * Visits, for every id in the catalog, the row {@link #rowOf(int)} returns.
+     */
+    void forEachRowWithId(IntConsumer consumer) {
+        for (int row = 0; row < columns.size(); row++) {
+            if (isCanonical(row))
+                consumer.accept(row);
+        }
+    }
+
+    /**
+     * @return index of the first flight, in departure order, departing at or after the epoch second
+     */
+    int departureIndex(long epochSecond) {
+        return AirportTimeline.lowerBound(departureEpochSeconds, epochSecond);
+    }
+
+    /**
+     * @return flight at the index in departure order, see {@link #departureIndex(long)}
+     */
+    Flight departureAt(int index) {
+        return columns.flight(rowsByDeparture[index]);
+    }
+
+    /**
+     * @return row in {@link #getColumns()} of the flight at the index in departure order
+     */
+    int departureRow(int index) {
+        return rowsByDeparture[index];
+    }
+
+    /**
+     * @return position in {@link #getAirportCodes()} of the code with the given dictionary index,
+     * or {@link FlightColumns#NONE}
+     */
+    int codeRank(int codeIndex) {
+        return codeIndex != FlightColumns.NONE ? codeRanks[codeIndex] : FlightColumns.NONE;
+    }
+
+    SuggestIndex getSuggestIndex() {
+        return suggestIndex;
+    }
+
+    FlightColumns getColumns() {
+        return columns;
+    }
+
+    AirportTimeline getDepartureTimeline(String code) {
+        return departureTimelines.getOrDefault(code, AirportTimeline.EMPTY);
+    }
+
+    /**
+     * Arrivals are ordered by departure date, the only time the feed provides.
+     */
+    AirportTimeline getArrivalTimeline(String code) {
+        return arrivalTimelines.getOrDefault(code, AirportTimeline.EMPTY);
+    }
+
+    /**
+     * Returns one page of flights, optionally sorted by a {@link Flight} property; unknown properties keep
+     * the feed order.
+     */
+    Stream<Flight> getFlights(int offset, int limit, String sortProperty, boolean descending) {
+        int size = columns.size();
+        int from = Math.min(offset, size);
+        int to = (int) Math.min((long) offset + limit, size);
+        if (sortProperty == null || !SORT_PROPERTIES.contains(sortProperty))
+            return IntStream.range(from, to).mapToObj(columns::flight);
+        int[] sorted = sortedRows.computeIfAbsent(sortProperty, this::sortRowsBy);
+        return IntStream.range(from, to)
+                .map(i -> descending ? sorted[size - 1 - i] : sorted[i])
+                .mapToObj(columns::flight);
+    }
+
+    /**
+     * Returns one page of departure dates in chronological order whose ISO-8601 text starts with the filter.
+     */
+    Stream<OffsetDateTime> getDepartureDates(String filter, int offset, int limit) {
+        return departureDateRows(filter).skip(offset).limit(limit).mapToObj(columns::departureDate);
+    }
+
+    int countDepartureDates(String filter) {
+        if (filter == null || filter.isEmpty())
+            return departureDateRows.length;
+        return (int) departureDateRows(filter).count();
+    }
+
+    /**
+     * The filter is parsed into a range of local date-times; dates whose instant can fall in it, given offsets
+     * of at most 18 hours, are found by binary search and only those are checked.
+     */
+    private IntStream departureDateRows(String filter) {
+        if (filter == null || filter.isEmpty())
+            return Arrays.stream(departureDateRows);
+        DateTimePrefix prefix = DateTimePrefix.parse(filter);
+        if (prefix == null)
+            return IntStream.empty();
+        int from = departureDateIndex(prefix.fromLocalSecond() - MAX_OFFSET_SECONDS);
+        int to = departureDateIndex(prefix.toLocalSecond() + MAX_OFFSET_SECONDS + 1);
+        return Arrays.stream(departureDateRows, from, Math.max(from, to))
+                .filter(row -> prefix.matches(columns.departureEpochSecond(row), columns.offsetSeconds(row)));
+    }
+
+    /**
+     * @return index in {@link #departureDateRows} of the first date departing at or after the epoch second
+     */
+    private int departureDateIndex(long epochSecond) {
+        int low = 0;
+        int high = departureDateRows.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (columns.departureEpochSecond(departureDateRows[middle]) < epochSecond)
+                low = middle + 1;
+            else
+                high = middle;
+        }
+        return low;
+    }
+
+    private Optional<Flight> flightAt(int row) {
+        return row != IntIntMap.MISSING ? Optional.of(columns.flight(row)) : Optional.empty();
+    }
+
+    private int[] sortRowsBy(String property) {
+        switch (property) {
+            case "id":
+                return sortRows(row -> columns.hasId(row) ? columns.id(row) : NO_KEY);
+            case "flightNumber":
+                return sortRows(row -> columns.hasFlightNumber(row) ? columns.flightNumber(row) : NO_KEY);
+            case "departureAirportIATACode":
+                return sortRows(row -> codeKey(columns.departureCode(row)));
+            case "arrivalAirportIATACode":
+                return sortRows(row -> codeKey(columns.arrivalCode(row)));
+            default:
+                return sortRows(this::departureDateKey);
+        }
+    }
+
+    private long codeKey(int codeIndex) {
+        return codeIndex != FlightColumns.NONE ? codeRanks[codeIndex] : NO_KEY;
+    }
+
+    /**
+     * Orders like {@link OffsetDateTime#compareTo}: by instant, then by local date-time, which for the same
+     * instant grows with the offset. Offsets are within ±18 hours, so they fit in the low 18 bits.
+     */
+    private long departureDateKey(int row) {
+        if (!columns.hasDepartureDate(row))
+            return NO_KEY;
+        return (columns.departureEpochSecond(row) << 18) + columns.offsetSeconds(row) + (1 << 17);
+    }
+
+    /**
+     * @return all rows in ascending key order, rows without a key last and equal keys in feed order
+     */
+    private int[] sortRows(IntToLongFunction key) {
+        long[] keys = new long[columns.size()];
+        for (int row = 0; row < keys.length; row++)
+            keys[row] = key.applyAsLong(row);
+        return IntStream.range(0, keys.length).boxed()
+                .sorted(Comparator.comparingLong(row -> keys[row]))
+                .mapToInt(Integer::intValue)
+                .toArray();
+    }
+
+    private Map<String, AirportTimeline> timelines(IntUnaryOperator codeOfRow) {
+        int[] counts = new int[columns.codeCount()];
+        for (int row : rowsByDeparture) {
+            int code = codeOfRow.applyAsInt(row);
+            if (code != FlightColumns.NONE)
+                counts[code]++;
+        }
+        long[][] epochSeconds = new long[counts.length][];
+        int[][] rows = new int[counts.length][];
+        for (int code = 0; code < counts.length; code++) {
+            epochSeconds[code] = new long[counts[code]];
+            rows[code] = new int[counts[code]];
+            counts[code] = 0;
+        }
+        for (int row : rowsByDeparture) {
+            int code = codeOfRow.applyAsInt(row);
+            if (code == FlightColumns.NONE)
+                continue;
+            epochSeconds[code][counts[code]] = columns.departureEpochSecond(row);
+            rows[code][counts[code]++] = row;
+        }
+        Map<String, AirportTimeline> timelines = new HashMap<>();
+        for (int code = 0; code < counts.length; code++) {
+            if (counts[code] > 0)
+                timelines.put(columns.code(code), AirportTimeline.of(epochSeconds[code], rows[code]));
+        }
+        return timelines;
+    }
+
+    /**
+     * @return read-only view creating each {@link Flight} when it is read
+     */
+    List<Flight> getFlights() {
+        return flights;
+    }
+
+    Set<String> getAirportCodes() {
+        return airportCodes;
+    }
+
+    /**
+     * @return departure dates in chronological order, created on each call
+     */
+    Set<OffsetDateTime> getDepartureDates() {
+        Set<OffsetDateTime> departureDates = new LinkedHashSet<>();
+        getDepartureDates(null, 0, Integer.MAX_VALUE).forEach(departureDates::add);
+        return Collections.unmodifiableSet(departureDates);
+    }
+
+    /**
+     * Collects flights one at a time, appending each to the columns and the id and flight number indexes
+     * as it arrives, so a catalog can be built while the feed is still being parsed.
+     */
+    static final class Builder {
+
+        private final FlightColumns.Builder columns = new FlightColumns.Builder();
+        private final IntIntMap rowsById = new IntIntMap(1024);
+        private final IntIntMap rowsByNumber = new IntIntMap(1024);
+
+        private Builder() {}
+
+        Builder add(Flight flight) {
+            int row = columns.add(flight);
+            if (flight.getId() != null)
+                rowsById.putIfAbsent(flight.getId(), row);
+            if (flight.getFlightNumber() != null)
+                rowsByNumber.putIfAbsent(flight.getFlightNumber(), row);
+            return this;
+        }
+
+        Builder addAll(Collection<Flight> flights) {
+            flights.forEach(this::add);
+            return this;
+        }
+
+        FlightCatalog build() {
+            return new FlightCatalog(this);
+        }
+    }
+
+    private static final class FlightList extends AbstractList<Flight> implements RandomAccess {
+
+        private final FlightColumns columns;
+
+        private FlightList(FlightColumns columns) {
+            this.columns = columns;
+        }
+
+        @Override
+        public Flight get(int index) {
+            Objects.checkIndex(index, columns.size());
+            return columns.flight(index);
+        }
+
+        @Override
+        public int size() {
+            return columns.size();
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package com.example.application.data;
+
+import com.example.application.model.Flight;
+
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.*;
+
+/**
+ * Flights stored column by column in primitive arrays, one row per flight: ids and flight numbers as {@code int},
+ * airport codes as {@code short} indexes into a dictionary of distinct codes, departure dates as an epoch second
+ * plus a {@code short} index into a dictionary of distinct zone offsets. A row takes about 23 bytes instead of the
+ * few hundred retained by a {@link Flight} with its boxed numbers, strings and date-time objects.
+ * {@link Flight} instances are only created on request by {@link #flight(int)}.
+ * <p>
+ * Departure dates are kept to the second, like the feed provides them.
+ */
+final class FlightColumns {
+
+    static final int NONE = -1;
+
+    private static final byte HAS_ID = 1;
+    private static final byte HAS_FLIGHT_NUMBER = 1 << 1;
+
+    private final int size;
+    private final byte[] flags;
+    private final int[] ids;
+    private final int[] flightNumbers;
+    private final short[] departureCodes;
+    private final short[] arrivalCodes;
+    private final long[] departureEpochSeconds;
+    private final short[] offsets;
+    private final String[] codes;
+    private final ZoneOffset[] zoneOffsets;
+
+    private FlightColumns(Builder builder) {
+        size = builder.size;
+        flags = Arrays.copyOf(builder.flags, size);
+        ids = Arrays.copyOf(builder.ids, size);
+        flightNumbers = Arrays.copyOf(builder.flightNumbers, size);
+        departureCodes = Arrays.copyOf(builder.departureCodes, size);
+        arrivalCodes = Arrays.copyOf(builder.arrivalCodes, size);
+        departureEpochSeconds = Arrays.copyOf(builder.departureEpochSeconds, size);
+        offsets = Arrays.copyOf(builder.offsets, size);
+        codes = builder.codes.toArray(new String[0]);
+        zoneOffsets = builder.zoneOffsets.toArray(new ZoneOffset[0]);
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean hasId(int row) {
+        return (flags[row] & HAS_ID) != 0;
+    }
+
+    int id(int row) {
+        return ids[row];
+    }
+
+    boolean hasFlightNumber(int row) {
+        return (flags[row] & HAS_FLIGHT_NUMBER) != 0;
+    }
+
+    int flightNumber(int row) {
+        return flightNumbers[row];
+    }
+
+    /**
+     * @return dictionary index of the departure airport code, or {@link #NONE}
+     */
+    int departureCode(int row) {
+        return departureCodes[row];
+    }
+
+    /**
+     * @return dictionary index of the arrival airport code, or {@link #NONE}
+     */
+    int arrivalCode(int row) {
+        return arrivalCodes[row];
+    }
+
+    int codeCount() {
+        return codes.length;
+    }
+
+    String code(int index) {
+        return index != NONE ? codes[index] : null;
+    }
+
+    boolean hasDepartureDate(int row) {
+        return offsets[row] != NONE;
+    }
+
+    long departureEpochSecond(int row) {
+        return departureEpochSeconds[row];
+    }
+
+    int offsetSeconds(int row) {
+        return zoneOffsets[offsets[row]].getTotalSeconds();
+    }
+
+    OffsetDateTime departureDate(int row) {
+        if (!hasDepartureDate(row))
+            return null;
+        ZoneOffset offset = zoneOffsets[offsets[row]];
+        return OffsetDateTime.of(LocalDateTime.ofEpochSecond(departureEpochSeconds[row], 0, offset), offset);
+    }
+
+    Flight flight(int row) {
+        return new Flight(hasId(row) ? ids[row] : null, hasFlightNumber(row) ? flightNumbers[row] : null,
+                code(departureCodes[row]), code(arrivalCodes[row]), departureDate(row));
+    }
+
+    static final class Builder {
+
+        private int size;
+        private byte[] flags = new byte[1024];
+        private int[] ids = new int[1024];
+        private int[] flightNumbers = new int[1024];
+        private short[] departureCodes = new short[1024];
+        private short[] arrivalCodes = new short[1024];
+        private long[] departureEpochSeconds = new long[1024];
+        private short[] offsets = new short[1024];
+        private final List<String> codes = new ArrayList<>();
+        private final Map<String, Short> codeIndexes = new HashMap<>();
+        private final List<ZoneOffset> zoneOffsets = new ArrayList<>();
+        private final Map<ZoneOffset, Short> zoneOffsetIndexes = new HashMap<>();
+
+        /**
+         * @return row of the added flight
+         */
+        int add(Flight flight) {
+            if (size == ids.length)
+                grow();
+            int row = size++;
+            flags[row] = (byte) ((flight.getId() != null ? HAS_ID : 0)
+                    | (flight.getFlightNumber() != null ? HAS_FLIGHT_NUMBER : 0));
+            ids[row] = flight.getId() != null ? flight.getId() : 0;
+            flightNumbers[row] = flight.getFlightNumber() != null ? flight.getFlightNumber() : 0;
+            departureCodes[row] = codeIndex(flight.getDepartureAirportIATACode());
+            arrivalCodes[row] = codeIndex(flight.getArrivalAirportIATACode());
+            OffsetDateTime departureDate = flight.getDepartureDate();
+            departureEpochSeconds[row] = departureDate != null ? departureDate.toEpochSecond() : 0;
+            offsets[row] = departureDate != null ? zoneOffsetIndex(departureDate.getOffset()) : NONE;
+            return row;
+        }
+
+        FlightColumns build() {
+            return new FlightColumns(this);
+        }
+
+        private short codeIndex(String code) {
+            if (code == null)
+                return NONE;
+            return codeIndexes.computeIfAbsent(code, key -> {
+                if (codes.size() > Short.MAX_VALUE)
+                    throw new IllegalStateException("Too many distinct airport codes");
+                codes.add(key);
+                return (short) (codes.size() - 1);
+            });
+        }
+
+        private short zoneOffsetIndex(ZoneOffset zoneOffset) {
+            return zoneOffsetIndexes.computeIfAbsent(zoneOffset, key -> {
+                zoneOffsets.add(key);
+                return (short) (zoneOffsets.size() - 1);
+            });
+        }
+
+        private void grow() {
+            int capacity = ids.length * 2;
+            flags = Arrays.copyOf(flags, capacity);
+            ids = Arrays.copyOf(ids, capacity);
+            flightNumbers = Arrays.copyOf(flightNumbers, capacity);
+            departureCodes = Arrays.copyOf(departureCodes, capacity);
+            arrivalCodes = Arrays.copyOf(arrivalCodes, capacity);
+            departureEpochSeconds = Arrays.copyOf(departureEpochSeconds, capacity);
+            offsets = Arrays.copyOf(offsets, capacity);
+        }
+    }
+}
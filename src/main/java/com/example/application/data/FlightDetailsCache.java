@@ -0,0 +1,156 @@
+package com.example.application.data;
+
+import com.example.application.model.FlightDetails;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Cache of flight details keyed by flight id, bounded either by entry count ({@code details.cache.max-entries})
+ * or, when {@code details.cache.max-bytes} is set, by an estimate of the retained baggage and cargo lists.
+ * Entries expire {@code details.cache.ttl-seconds} after being loaded and are evicted by Caffeine's
+ * frequency-aware W-TinyLFU policy, so popular flights stay cached while one-off lookups are dropped first.
+ * <p>
+ * A second cache with the same bound but without expiry keeps the last known details of each flight, served
+ * when upstream is slow or failing. Details that changed or disappeared upstream are removed from both.
+ * <p>
+ * Hits, misses, evictions and load times are published as Micrometer's {@code cache.*} meters tagged
+ * {@code cache=flightDetails}, single-flight loads outside Caffeine as {@code airport.details.single.loads}.
+ */
+@Component
+class FlightDetailsCache implements MeterBinder {
+
+    private static final int ESTIMATED_DETAILS_BYTES = 128;
+    private static final int ESTIMATED_ITEM_BYTES = 40;
+
+    private final Cache<Integer, FlightDetails> cache;
+    private final Cache<Integer, FlightDetails> lastKnownGood;
+    private final LongAdder singleLoads = new LongAdder();
+    private final LongAdder singleLoadNanos = new LongAdder();
+
+    FlightDetailsCache(@Value("${details.cache.max-entries:10000}") long maxEntries,
+                       @Value("${details.cache.max-bytes:0}") long maxBytes,
+                       @Value("${details.cache.ttl-seconds:300}") long ttlSeconds) {
+        cache = bounded(Caffeine.newBuilder()
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .recordStats(), maxEntries, maxBytes);
+        lastKnownGood = bounded(Caffeine.newBuilder(), maxEntries, maxBytes);
+    }
+
+    /**
+     * @return cached details, or {@code null} when the flight is not cached
+     */
+    FlightDetails getIfPresent(int flightId) {
+        return cache.getIfPresent(flightId);
+    }
+
+    /**
+     * @return last details loaded for the flight, even if expired, or {@code null} when none are known
+     */
+    FlightDetails getLastKnownGood(int flightId) {
+        return lastKnownGood.getIfPresent(flightId);
+    }
+
+    /**
+     * Returns cached details for the given flights and loads all missing ones with a single loader call.
+     */
+    Map<Integer, FlightDetails> getAll(Collection<Integer> flightIds,
+                                       Function<Collection<Integer>, Map<Integer, FlightDetails>> loader) {
+        return cache.getAll(flightIds, missing -> {
+            Collection<Integer> missingIds = new ArrayList<>();
+            missing.forEach(missingIds::add);
+            Map<Integer, FlightDetails> loaded = loader.apply(missingIds);
+            lastKnownGood.putAll(loaded);
+            return loaded;
+        });
+    }
+
+    /**
+     * Records a single-flight load that fetched details outside {@link #getAll}, so that {@code loads} and
+     * {@code loadTimeNanos} in the statistics cover every upstream load, failed ones included.
+     */
+    void recordLoad(long nanos) {
+        singleLoads.increment();
+        singleLoadNanos.add(nanos);
+    }
+
+    void put(FlightDetails flightDetails) {
+        cache.put(flightDetails.getFlightId(), flightDetails);
+        lastKnownGood.put(flightDetails.getFlightId(), flightDetails);
+    }
+
+    void invalidate(int flightId) {
+        cache.invalidate(flightId);
+        lastKnownGood.invalidate(flightId);
+    }
+
+    /**
+     * @return live view of the last known details, expired ones included; reading it does not affect hit/miss
+     * statistics
+     */
+    Map<Integer, FlightDetails> lastKnownGoodAsMap() {
+        return lastKnownGood.asMap();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, cache, "flightDetails");
+        FunctionTimer.builder("airport.details.single.loads", this, FlightDetailsCache::singleLoadCount,
+                        FlightDetailsCache::singleLoadTotalNanos, TimeUnit.NANOSECONDS)
+                .description("Details loaded one flight at a time through the single-flight path")
+                .register(registry);
+        Gauge.builder("airport.details.last.known.good.size", lastKnownGood, Cache::estimatedSize)
+                .register(registry);
+    }
+
+    Map<String, Long> getStatistics() {
+        CacheStats stats = cache.stats();
+        Map<String, Long> statistics = new LinkedHashMap<>();
+        statistics.put("size", cache.estimatedSize());
+        statistics.put("hits", stats.hitCount());
+        statistics.put("misses", stats.missCount());
+        statistics.put("evictions", stats.evictionCount());
+        statistics.put("loads", stats.loadCount() + singleLoads.sum());
+        statistics.put("loadTimeNanos", stats.totalLoadTime() + singleLoadNanos.sum());
+        return statistics;
+    }
+
+    private long singleLoadCount() {
+        return singleLoads.sum();
+    }
+
+    private double singleLoadTotalNanos() {
+        return singleLoadNanos.sum();
+    }
+
+    private static Cache<Integer, FlightDetails> bounded(Caffeine<Object, Object> builder, long maxEntries,
+                                                         long maxBytes) {
+        if (maxBytes > 0)
+            return builder.maximumWeight(maxBytes)
+                    .weigher((Integer flightId, FlightDetails details) -> estimateBytes(details))
+                    .build();
+        return builder.maximumSize(maxEntries).build();
+    }
+
+    private static int estimateBytes(FlightDetails details) {
+        int items = (details.getBaggage() != null ? details.getBaggage().size() : 0)
+                + (details.getCargo() != null ? details.getCargo().size() : 0);
+        return ESTIMATED_DETAILS_BYTES + items * ESTIMATED_ITEM_BYTES;
+    }
+}
@@ -0,0 +1,180 @@
+package com.example.application.data;
+
+import com.example.application.model.Flight;
+import com.example.application.model.FlightWeights;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+
+/**
+ * Writes flights with their cargo, baggage and total weight in kilograms straight to an output stream, one row per
+ * flight. Flights are taken in batches: the weights of the next batch are loaded while the current one is written,
+ * and nothing beyond those two batches is held, so memory stays constant and a slow reader slows the export down
+ * instead of filling buffers. Flights whose weights are unknown get empty weight fields.
+ */
+final class FlightExport {
+
+    static final int BATCH_SIZE = 1000;
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+    private static final String CSV_HEADER = "id,flightNumber,departureAirportIATACode,arrivalAirportIATACode,"
+            + "departureDate,cargoWeight,baggageWeight,totalWeight";
+
+    private FlightExport() {}
+
+    /**
+     * @param weights loads the weights of a batch of flights, keyed by flight id
+     */
+    static void write(List<Flight> flights, ExportFormat format, OutputStream outputStream,
+                      Function<List<Flight>, CompletableFuture<Map<Integer, FlightWeights>>> weights)
+            throws IOException {
+        try (RowWriter rows = format == ExportFormat.CSV ? new CsvRowWriter(outputStream)
+                : new JsonRowWriter(outputStream)) {
+            List<Flight> batch = batch(flights, 0);
+            CompletableFuture<Map<Integer, FlightWeights>> batchWeights = weights.apply(batch);
+            for (int from = 0; from < flights.size(); from += BATCH_SIZE) {
+                Map<Integer, FlightWeights> currentWeights = join(batchWeights);
+                List<Flight> current = batch;
+                if (from + BATCH_SIZE < flights.size()) {
+                    batch = batch(flights, from + BATCH_SIZE);
+                    batchWeights = weights.apply(batch);
+                }
+                for (Flight flight : current)
+                    rows.write(flight, flight.getId() != null ? currentWeights.get(flight.getId()) : null);
+            }
+        }
+    }
+
+    private static List<Flight> batch(List<Flight> flights, int from) {
+        return new ArrayList<>(flights.subList(Math.min(from, flights.size()),
+                Math.min(from + BATCH_SIZE, flights.size())));
+    }
+
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            throw e;
+        }
+    }
+
+    /**
+     * Closing a row writer flushes it without closing the underlying stream.
+     */
+    private interface RowWriter extends Closeable {
+
+        void write(Flight flight, FlightWeights weights) throws IOException;
+    }
+
+    private static final class JsonRowWriter implements RowWriter {
+
+        private final JsonGenerator generator;
+
+        private JsonRowWriter(OutputStream outputStream) throws IOException {
+            generator = JSON_FACTORY.createGenerator(outputStream, JsonEncoding.UTF8)
+                    .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.setRootValueSeparator(null);
+        }
+
+        @Override
+        public void write(Flight flight, FlightWeights weights) throws IOException {
+            generator.writeStartObject();
+            writeNumberField("id", flight.getId());
+            writeNumberField("flightNumber", flight.getFlightNumber());
+            generator.writeStringField("departureAirportIATACode", flight.getDepartureAirportIATACode());
+            generator.writeStringField("arrivalAirportIATACode", flight.getArrivalAirportIATACode());
+            generator.writeStringField("departureDate",
+                    flight.getDepartureDate() != null ? flight.getDepartureDate().toString() : null);
+            if (weights != null) {
+                generator.writeNumberField("cargoWeight", weights.getCargo());
+                generator.writeNumberField("baggageWeight", weights.getBaggage());
+                generator.writeNumberField("totalWeight", weights.getTotal());
+            } else {
+                generator.writeNullField("cargoWeight");
+                generator.writeNullField("baggageWeight");
+                generator.writeNullField("totalWeight");
+            }
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+        }
+
+        private void writeNumberField(String name, Integer value) throws IOException {
+            if (value != null)
+                generator.writeNumberField(name, value);
+            else
+                generator.writeNullField(name);
+        }
+
+        @Override
+        public void close() throws IOException {
+            generator.close();
+        }
+    }
+
+    private static final class CsvRowWriter implements RowWriter {
+
+        private final Writer writer;
+
+        private CsvRowWriter(OutputStream outputStream) throws IOException {
+            writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+            writer.write(CSV_HEADER);
+            writer.write('\n');
+        }
+
+        @Override
+        public void write(Flight flight, FlightWeights weights) throws IOException {
+            writeField(flight.getId());
+            writer.write(',');
+            writeField(flight.getFlightNumber());
+            writer.write(',');
+            writeField(flight.getDepartureAirportIATACode());
+            writer.write(',');
+            writeField(flight.getArrivalAirportIATACode());
+            writer.write(',');
+            writeField(flight.getDepartureDate());
+            writer.write(',');
+            if (weights != null) {
+                writer.write(Double.toString(weights.getCargo()));
+                writer.write(',');
+                writer.write(Double.toString(weights.getBaggage()));
+                writer.write(',');
+                writer.write(Double.toString(weights.getTotal()));
+            } else {
+                writer.write(",,");
+            }
+            writer.write('\n');
+        }
+
+        private void writeField(Object value) throws IOException {
+            if (value == null)
+                return;
+            String text = value.toString();
+            if (text.indexOf(',') < 0 && text.indexOf('"') < 0 && text.indexOf('\n') < 0) {
+                writer.write(text);
+                return;
+            }
+            writer.write('"');
+            writer.write(text.replace("\"", "\"\""));
+            writer.write('"');
+        }
+
+        /**
+         * Flushes only, the underlying stream belongs to the caller.
+         */
+        @Override
+        public void close() throws IOException {
+            writer.flush();
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.example.application.data;
+
+import com.example.application.model.Baggage;
+import com.example.application.model.Cargo;
+import com.example.application.model.Flight;
+import com.example.application.model.FlightDetails;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Token-streaming reader of the json-server {@code /flight} and {@code /details} feeds. Array elements are handed
+ * to the consumer as soon as they are parsed, so neither the response body nor an intermediate array is ever
+ * held in memory as a whole.
+ */
+@Component
+class FlightFeedReader {
+
+    private final ObjectMapper objectMapper;
+
+    FlightFeedReader(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    void readFlights(InputStream inputStream, Consumer<Flight> consumer) throws IOException {
+        try (JsonParser parser = objectMapper.getFactory().createParser(inputStream)) {
+            if (expectArray(parser))
+                while (parser.nextToken() == JsonToken.START_OBJECT)
+                    consumer.accept(parser.readValueAs(Flight.class));
+        }
+    }
+
+    void readDetails(InputStream inputStream, Consumer<FlightDetails> consumer) throws IOException {
+        try (JsonParser parser = objectMapper.getFactory().createParser(inputStream)) {
+            if (expectArray(parser))
+                while (parser.nextToken() == JsonToken.START_OBJECT)
+                    consumer.accept(readDetails(parser));
+        }
+    }
+
+    private FlightDetails readDetails(JsonParser parser) throws IOException {
+        FlightDetails flightDetails = new FlightDetails();
+        List<Baggage> baggage = new ArrayList<>();
+        List<Cargo> cargo = new ArrayList<>();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            parser.nextToken();
+            switch (field) {
+                case "flightId":
+                    flightDetails.setFlightId(parser.getIntValue());
+                    break;
+                case "baggage":
+                    readItems(parser, Baggage.class, baggage);
+                    break;
+                case "cargo":
+                    readItems(parser, Cargo.class, cargo);
+                    break;
+                default:
+                    parser.skipChildren();
+            }
+        }
+        flightDetails.setBaggage(baggage);
+        flightDetails.setCargo(cargo);
+        return flightDetails;
+    }
+
+    private <T> void readItems(JsonParser parser, Class<T> type, List<T> items) throws IOException {
+        if (parser.currentToken() != JsonToken.START_ARRAY) {
+            parser.skipChildren();
+            return;
+        }
+        while (parser.nextToken() == JsonToken.START_OBJECT)
+            items.add(parser.readValueAs(type));
+    }
+
+    private boolean expectArray(JsonParser parser) throws IOException {
+        JsonToken token = parser.nextToken();
+        if (token == null)
+            return false;
+        if (token != JsonToken.START_ARRAY)
+            throw new IOException("Expected a JSON array but got " + token);
+        return true;
+    }
+}
@@ -3,46 +3,270 @@ package com.example.application.data;
 import com.example.application.model.Flight;
 import com.example.application.model.FlightDetails;
 import com.example.application.utils.FlightNotFoundException;
-import org.springframework.http.ResponseEntity;
+import com.example.application.utils.SingleFlight;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.web.client.RestClientException;
 import org.springframework.web.client.RestTemplate;
 
+import javax.annotation.PostConstruct;
+import java.io.IOException;
 import java.time.OffsetDateTime;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @org.springframework.stereotype.Repository
-class Repository {
+class Repository implements MeterBinder {
 
-    private final String FLIGHTS_URL = "http://localhost:3000/flight";
-    private final String DETAILS_URL = "http://localhost:3000/details";
+    private static final Logger log = LoggerFactory.getLogger(Repository.class);
+
+    private final String flightsUrl;
+    private final String detailsUrl;
     private final RestTemplate restTemplate;
-    private List<Flight> flights;
-    private final Set<String> airPortCodes = new HashSet<>();
-    private final Set<OffsetDateTime> departureDates = new HashSet<>();
+    private final ExecutorService upstreamExecutor;
+    private final ExecutorService upstreamCallExecutor;
+    private final StatisticsIndex statisticsIndex;
+    private final FlightFeedReader flightFeedReader;
+    private final FlightDetailsCache flightDetailsCache;
+    private final CatalogSnapshotFile catalogSnapshotFile;
+    private final CatalogChangeBroadcaster catalogChangeBroadcaster;
+    private final int detailsBatchSize;
+    private final Semaphore detailsBatchPermits;
+    private final SingleFlight<Integer, FlightDetails> detailsCalls = new SingleFlight<>();
+    private final UpstreamGuard detailsGuard;
+    private final LongAdder servedLastKnownGood = new LongAdder();
+    private final AtomicReference<FlightCatalog> catalog = new AtomicReference<>(FlightCatalog.EMPTY);
+    private long snapshotVersion = -1;
+    private String flightsETag;
+    private String detailsETag;
 
-    Repository(RestTemplate restTemplate) {
+    Repository(RestTemplate restTemplate,
+               @Value("${flight.url}") String flightsUrl,
+               @Value("${details.url}") String detailsUrl,
+               @Qualifier("upstreamExecutor") ExecutorService upstreamExecutor,
+               StatisticsIndex statisticsIndex,
+               FlightFeedReader flightFeedReader,
+               FlightDetailsCache flightDetailsCache,
+               CatalogSnapshotFile catalogSnapshotFile,
+               CatalogChangeBroadcaster catalogChangeBroadcaster,
+               @Value("${details.batch-size:100}") int detailsBatchSize,
+               @Value("${details.max-concurrent-batches:4}") int maxConcurrentBatches,
+               @Qualifier("upstreamCallExecutor") ExecutorService upstreamCallExecutor,
+               @Value("${upstream.details.max-concurrent:16}") int maxConcurrentDetails,
+               @Value("${upstream.details.deadline:1000}") long detailsDeadlineMillis,
+               @Value("${upstream.details.hedge:true}") boolean hedgeDetails,
+               @Value("${upstream.details.hedge-min-delay:20}") long minHedgeDelayMillis) {
         this.restTemplate = restTemplate;
+        this.flightsUrl = flightsUrl;
+        this.detailsUrl = detailsUrl;
+        this.upstreamExecutor = upstreamExecutor;
+        this.statisticsIndex = statisticsIndex;
+        this.flightFeedReader = flightFeedReader;
+        this.flightDetailsCache = flightDetailsCache;
+        this.catalogSnapshotFile = catalogSnapshotFile;
+        this.catalogChangeBroadcaster = catalogChangeBroadcaster;
+        this.detailsBatchSize = detailsBatchSize;
+        this.detailsBatchPermits = new Semaphore(maxConcurrentBatches);
+        this.upstreamCallExecutor = upstreamCallExecutor;
+        this.detailsGuard = new UpstreamGuard("details", upstreamCallExecutor, maxConcurrentDetails,
+                detailsDeadlineMillis, hedgeDetails, minHedgeDelayMillis);
     }
 
     List<Flight> findAllFlights() {
-        ResponseEntity<Flight[]> response =
-                restTemplate.getForEntity(FLIGHTS_URL, Flight[].class);
-        Flight[] flights = response.getBody();
-        if (flights != null && flights.length > 0) {
-            this.flights = Arrays.asList(flights);
-            this.flights.forEach(flight -> {
-                airPortCodes.add(flight.getArrivalAirportIATACode());
-                airPortCodes.add(flight.getDepartureAirportIATACode());
-                departureDates.add(flight.getDepartureDate());
+        return catalog.get().getFlights();
+    }
+
+    FlightCatalog getCatalog() {
+        return catalog.get();
+    }
+
+    Stream<Flight> findFlights(int offset, int limit, String sortProperty, boolean descending) {
+        return catalog.get().getFlights(offset, limit, sortProperty, descending);
+    }
+
+    int countFlights() {
+        return catalog.get().getFlights().size();
+    }
+
+    Stream<OffsetDateTime> findDepartureDates(String filter, int offset, int limit) {
+        return catalog.get().getDepartureDates(filter, offset, limit);
+    }
+
+    int countDepartureDates(String filter) {
+        return catalog.get().countDepartureDates(filter);
+    }
+
+    CompletableFuture<List<Flight>> findAllFlightsAsync() {
+        return CompletableFuture.completedFuture(findAllFlights());
+    }
+
+    /**
+     * Serves the last persisted catalog until the first refresh from upstream completes.
+     */
+    @PostConstruct
+    void loadSnapshot() {
+        long start = System.nanoTime();
+        catalogSnapshotFile.read().ifPresent(snapshot -> {
+            catalog.set(snapshot.getCatalog());
+            statisticsIndex.applyFlights(snapshot.getCatalog());
+            snapshot.getBaggagePieces().forEach((flightId, pieces) ->
+                    statisticsIndex.applyTotals(flightId, pieces, snapshot.getWeights().get(flightId)));
+            snapshot.getDetails().forEach(details -> {
+                flightDetailsCache.put(details);
+                statisticsIndex.applyDetails(details);
             });
-            return this.flights;
-        } else {
-            this.flights = new ArrayList<>();
-            return new ArrayList<>();
+            snapshotVersion = statisticsIndex.getVersion();
+            log.info("Loaded {} flights from catalog snapshot in {} ms", snapshot.getCatalog().getFlights().size(),
+                    (System.nanoTime() - start) / 1_000_000);
+        });
+    }
+
+    Runnable addCatalogChangeListener(Consumer<CatalogChanges> listener) {
+        return catalogChangeBroadcaster.register(listener);
+    }
+
+    /**
+     * Polls the flight and details feeds with {@code If-None-Match}, so an unchanged feed costs a 304 without a
+     * body. Only flights and details that were added, changed or removed touch the statistics index and the
+     * details cache, and the changes are broadcast to open views. When the details feed cannot be read, details
+     * of flights with unknown baggage are loaded in batches instead.
+     */
+    @Scheduled(initialDelayString = "${catalog.refresh.initial-delay:0}",
+            fixedDelayString = "${catalog.refresh.interval:60000}")
+    void refreshCatalog() {
+        try {
+            CatalogChanges changes = CatalogChanges.NONE;
+            List<Flight> withoutDetails = Collections.emptyList();
+            Optional<FlightCatalog> downloaded = downloadFlights();
+            if (downloaded.isPresent()) {
+                FlightCatalog current = downloaded.get();
+                changes = current.changesSince(catalog.getAndSet(current));
+                withoutDetails = statisticsIndex.applyFlights(current);
+                changes.getChanged().forEach(flight -> flightDetailsCache.invalidate(flight.getId()));
+                changes.getRemoved().forEach(flight -> flightDetailsCache.invalidate(flight.getId()));
+            }
+            Set<Integer> changedDetails;
+            try {
+                changedDetails = syncDetails();
+            } catch (RestClientException e) {
+                log.warn("Details feed sync failed, loading missing details in batches: {}", e.getMessage());
+                changedDetails = getFlightDetails(withoutDetails).keySet();
+            }
+            changes = changes.withChangedDetails(changedDetails);
+            writeSnapshot(catalog.get());
+            if (!changes.isEmpty())
+                catalogChangeBroadcaster.broadcast(changes);
+        } catch (RestClientException e) {
+            log.warn("Flight catalog refresh failed, keeping previous snapshot: {}", e.getMessage());
+        }
+    }
+
+    private void writeSnapshot(FlightCatalog current) {
+        long version = statisticsIndex.getVersion();
+        if (version == snapshotVersion)
+            return;
+        try {
+            catalogSnapshotFile.write(current.getFlights(), flightDetailsCache.lastKnownGoodAsMap(),
+                    statisticsIndex);
+            snapshotVersion = version;
+        } catch (IOException e) {
+            log.warn("Could not write catalog snapshot: {}", e.getMessage());
         }
     }
 
+    /**
+     * @return the new catalog, or empty when the feed has not changed since the last download
+     */
+    private Optional<FlightCatalog> downloadFlights() {
+        FlightCatalog downloaded = restTemplate.execute(flightsUrl, HttpMethod.GET,
+                request -> acceptJsonIfNoneMatch(request, flightsETag), response -> {
+                    if (response.getStatusCode() == HttpStatus.NOT_MODIFIED)
+                        return null;
+                    FlightCatalog.Builder catalog = FlightCatalog.builder();
+                    flightFeedReader.readFlights(response.getBody(), catalog::add);
+                    flightsETag = response.getHeaders().getETag();
+                    return catalog.build();
+                });
+        return Optional.ofNullable(downloaded);
+    }
+
+    /**
+     * Reads the details feed if it changed and applies details whose baggage or weights differ from the index, or which
+     * differ from the cached copy, as well as details that disappeared from the feed.
+     *
+     * @return ids of flights whose details changed
+     */
+    private Set<Integer> syncDetails() {
+        Set<Integer> changed = restTemplate.execute(detailsUrl, HttpMethod.GET,
+                request -> acceptJsonIfNoneMatch(request, detailsETag), response -> {
+                    if (response.getStatusCode() == HttpStatus.NOT_MODIFIED)
+                        return null;
+                    Map<Integer, Integer> removedPieces = statisticsIndex.getBaggagePieces();
+                    Set<Integer> changedIds = new HashSet<>();
+                    flightFeedReader.readDetails(response.getBody(), details -> {
+                        Integer pieces = removedPieces.remove(details.getFlightId());
+                        FlightDetails cached = flightDetailsCache.getIfPresent(details.getFlightId());
+                        if (pieces != null && pieces == details.getBaggagePieces()
+                                && details.getWeights().equals(statisticsIndex.getWeights(details.getFlightId()))
+                                && (cached == null || cached.equals(details)))
+                            return;
+                        changedIds.add(details.getFlightId());
+                        flightDetailsCache.put(details);
+                        statisticsIndex.applyDetails(details);
+                    });
+                    for (Integer flightId : removedPieces.keySet()) {
+                        changedIds.add(flightId);
+                        flightDetailsCache.invalidate(flightId);
+                        statisticsIndex.removeBaggagePieces(flightId);
+                    }
+                    detailsETag = response.getHeaders().getETag();
+                    return changedIds;
+                });
+        return changed != null ? changed : Collections.emptySet();
+    }
+
+    private List<FlightDetails> downloadDetails(String url) {
+        return restTemplate.execute(url, HttpMethod.GET, this::acceptJson, response -> {
+            List<FlightDetails> flightDetails = new ArrayList<>();
+            flightFeedReader.readDetails(response.getBody(), flightDetails::add);
+            return flightDetails;
+        });
+    }
+
+    private void acceptJson(ClientHttpRequest request) {
+        request.getHeaders().setAccept(Collections.singletonList(MediaType.APPLICATION_JSON));
+    }
+
+    private void acceptJsonIfNoneMatch(ClientHttpRequest request, String eTag) {
+        acceptJson(request);
+        if (eTag != null)
+            request.getHeaders().setIfNoneMatch(eTag);
+    }
+
     Optional<Flight> findFlightById(int id){
-        return Optional.ofNullable(restTemplate.getForObject(FLIGHTS_URL + "/" + id, Flight.class));
+        return catalog.get().findById(id);
+    }
+
+    CompletableFuture<Optional<Flight>> findFlightByIdAsync(int id) {
+        return CompletableFuture.completedFuture(findFlightById(id));
     }
 
     Optional<FlightDetails> getFlightDetailsByFlightNumber(Integer flightNumber) throws FlightNotFoundException {
@@ -55,11 +279,8 @@ class Repository {
         return Optional.empty();
     }
 
-    private Optional<Flight> getFlightByFlightNumber(Integer flightNumber){
-        ResponseEntity<Flight[]> flightsResponse = restTemplate.getForEntity(FLIGHTS_URL + "?flightNumber="
-                + flightNumber, Flight[].class);
-        Flight[] flights = flightsResponse.getBody();
-        return checkIfValueIsPresent(flights);
+    Optional<Flight> getFlightByFlightNumber(Integer flightNumber){
+        return catalog.get().findByFlightNumber(flightNumber);
     }
 
     Optional<FlightDetails> getFlightDetailsByFlightDate(OffsetDateTime departureDate) {
@@ -70,35 +291,148 @@ class Repository {
         return Optional.empty();
     }
 
-    private Optional<Flight> getFlightByDate(OffsetDateTime date){
-        return flights.stream().filter(flight1 -> flight1.getDepartureDate().equals(date)).findFirst();
+    Optional<Flight> getFlightByDate(OffsetDateTime date){
+        return date != null ? catalog.get().findByDepartureDate(date) : Optional.empty();
     }
 
+    /**
+     * Concurrent lookups of a flight that is not cached share one upstream request, including lookups of flights
+     * without details, whose empty result is not cached. The request is bounded by the details
+     * {@link UpstreamGuard}; when it fails or misses its deadline, the last known details of the flight are served
+     * if there are any.
+     */
     Optional<FlightDetails> getFlightDetails(Flight flight) {
         if (flight.getId() != null) {
-            var responseEntity = restTemplate.getForEntity(DETAILS_URL + "?flightId="
-                    + flight.getId(), FlightDetails[].class);
-            FlightDetails[] flightDetails = responseEntity.getBody();
-            return checkIfValueIsPresent(flightDetails);
+            int flightId = flight.getId();
+            FlightDetails cached = flightDetailsCache.getIfPresent(flightId);
+            if (cached != null)
+                return Optional.of(cached);
+            try {
+                return Optional.ofNullable(detailsCalls.execute(flightId, () -> loadFlightDetails(flightId)));
+            } catch (RestClientException e) {
+                FlightDetails lastKnownGood = flightDetailsCache.getLastKnownGood(flightId);
+                if (lastKnownGood == null)
+                    throw e;
+                servedLastKnownGood.increment();
+                log.debug("Serving last known details of flight {}: {}", flightId, e.getMessage());
+                return Optional.of(lastKnownGood);
+            }
         } else {
             return Optional.empty();
         }
     }
 
-    private <T> Optional<T> checkIfValueIsPresent(T[] array){
-        if (array != null && array.length > 0) {
-            return Optional.of(array[0]);
+    /**
+     * Non-blocking variant of {@link #getFlightDetails(Flight)}; the upstream call, if needed, runs on the
+     * upstream executor.
+     */
+    CompletableFuture<Optional<FlightDetails>> getFlightDetailsAsync(Flight flight) {
+        return CompletableFuture.supplyAsync(() -> getFlightDetails(flight), upstreamExecutor);
+    }
+
+    private FlightDetails loadFlightDetails(Integer flightId) {
+        String url = detailsUrl + "?flightId=" + flightId;
+        long start = System.nanoTime();
+        List<FlightDetails> flightDetails;
+        try {
+            flightDetails = detailsGuard.call(() -> downloadDetails(url));
+        } finally {
+            flightDetailsCache.recordLoad(System.nanoTime() - start);
         }
-        return Optional.empty();
+        Optional<FlightDetails> details = flightDetails.stream().findFirst();
+        details.ifPresent(found -> {
+            flightDetailsCache.put(found);
+            statisticsIndex.applyDetails(found);
+        });
+        return details.orElse(null);
     }
 
-    public Set<String> getAirportCodes() { return airPortCodes; }
+    /**
+     * Loads details for many flights at once. Ids are split into batches of {@code details.batch-size}, each batch is
+     * a single {@code /details?flightId=..&flightId=..} request and at most {@code details.max-concurrent-batches}
+     * of them are in flight at the same time. Details already cached are not requested again.
+     *
+     * @return details keyed by flight id, flights without details are absent
+     */
+    Map<Integer, FlightDetails> getFlightDetails(Collection<Flight> flights) {
+        List<Integer> flightIds = flights.stream().map(Flight::getId).filter(Objects::nonNull).distinct()
+                .collect(Collectors.toList());
+        return flightDetailsCache.getAll(flightIds, this::loadFlightDetailsInBatches);
+    }
 
-    public Set<OffsetDateTime> getDepartureDates() {
-        return departureDates;
+    /**
+     * Loads details for a bulk read such as an export, batched like {@link #getFlightDetails(Collection)} but past
+     * the details cache and the statistics index. A full export then neither evicts the details interactive
+     * lookups keep hot nor bumps the statistics version that clients revalidate their ETags against.
+     *
+     * @return details keyed by flight id, flights without details are absent
+     */
+    CompletableFuture<Map<Integer, FlightDetails>> loadFlightDetailsUncachedAsync(Collection<Flight> flights) {
+        List<Integer> flightIds = flights.stream().map(Flight::getId).filter(Objects::nonNull).distinct()
+                .collect(Collectors.toList());
+        return CompletableFuture.supplyAsync(() -> downloadDetailsInBatches(flightIds), upstreamCallExecutor);
+    }
+
+    private Map<Integer, FlightDetails> loadFlightDetailsInBatches(Collection<Integer> missingIds) {
+        Map<Integer, FlightDetails> flightDetails = downloadDetailsInBatches(missingIds);
+        flightDetails.values().forEach(statisticsIndex::applyDetails);
+        return flightDetails;
     }
 
-    public List<Flight> getFlights() {
-        return flights;
+    private Map<Integer, FlightDetails> downloadDetailsInBatches(Collection<Integer> missingIds) {
+        List<Integer> flightIds = new ArrayList<>(missingIds);
+        List<CompletableFuture<List<FlightDetails>>> batches = new ArrayList<>();
+        for (int from = 0; from < flightIds.size(); from += detailsBatchSize) {
+            List<Integer> batch = flightIds.subList(from, Math.min(from + detailsBatchSize, flightIds.size()));
+            batches.add(CompletableFuture.supplyAsync(() -> getFlightDetailsBatch(batch), upstreamExecutor));
+        }
+        Map<Integer, FlightDetails> flightDetails = new HashMap<>();
+        try {
+            for (CompletableFuture<List<FlightDetails>> batch : batches) {
+                for (FlightDetails details : batch.join())
+                    flightDetails.putIfAbsent(details.getFlightId(), details);
+            }
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            throw e;
+        }
+        return flightDetails;
+    }
+
+    private List<FlightDetails> getFlightDetailsBatch(List<Integer> flightIds) {
+        String query = flightIds.stream().map(id -> "flightId=" + id).collect(Collectors.joining("&"));
+        detailsBatchPermits.acquireUninterruptibly();
+        try {
+            return downloadDetails(detailsUrl + "?" + query);
+        } finally {
+            detailsBatchPermits.release();
+        }
+    }
+
+    /**
+     * Publishes the details guard's hedge, deadline and bulkhead counters and the last known details served in
+     * place of failed loads.
+     */
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        detailsGuard.bindTo(registry);
+        FunctionCounter.builder("airport.upstream.last.known.good", servedLastKnownGood, LongAdder::sum)
+                .description("Last known details served because loading fresh ones failed")
+                .tag("endpoint", "details").register(registry);
+    }
+
+    Map<String, Long> getDetailsCacheStatistics() {
+        Map<String, Long> statistics = flightDetailsCache.getStatistics();
+        statistics.put("coalesced", detailsCalls.getCoalescedCount());
+        statistics.putAll(detailsGuard.getStatistics());
+        statistics.put("servedLastKnownGood", servedLastKnownGood.sum());
+        return statistics;
+    }
+
+    public Set<String> getAirportCodes() { return catalog.get().getAirportCodes(); }
+
+    public Set<OffsetDateTime> getDepartureDates() {
+        return catalog.get().getDepartureDates();
     }
 }
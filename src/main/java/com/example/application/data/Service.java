@@ -1,30 +1,80 @@
 package com.example.application.data;
 
 import com.example.application.SearchTerm;
-import com.example.application.model.Baggage;
 import com.example.application.model.Flight;
 import com.example.application.model.FlightDetails;
+import com.example.application.model.FlightWeights;
+import com.example.application.model.RankedAirport;
+import com.example.application.model.RankedFlight;
+import com.example.application.model.StatisticsBucket;
+import com.example.application.instrumentation.Instrumentation;
 import com.example.application.utils.FlightNotFoundException;
+import com.example.application.utils.TopN;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.Duration;
+import java.time.Instant;
 import java.time.OffsetDateTime;
+import java.time.temporal.ChronoUnit;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 @org.springframework.stereotype.Service
 public class Service {
 
-    private final double LB_CONVERT_TO_KG_VALUE = 0.45359237;
+    private static final int MAX_HISTOGRAM_BUCKETS = 10_000;
+    private static final int MAX_LEADERBOARD_SIZE = 1_000;
+    private static final int MAX_SUGGESTIONS = 1_000;
+    private static final int MAX_BULK_WEIGHTS = 1_000;
+
     private final Repository repository;
+    private final StatisticsIndex statisticsIndex;
+    private final Instrumentation instrumentation;
 
-    public Service(Repository repository) {
+    public Service(Repository repository, StatisticsIndex statisticsIndex, Instrumentation instrumentation) {
         this.repository = repository;
+        this.statisticsIndex = statisticsIndex;
+        this.instrumentation = instrumentation;
     }
 
     public List<Flight> findAllFlights() {
         return repository.findAllFlights();
     }
 
+    public Stream<Flight> fetchFlights(int offset, int limit, String sortProperty, boolean descending) {
+        return repository.findFlights(offset, limit, sortProperty, descending);
+    }
+
+    public int countFlights() {
+        return repository.countFlights();
+    }
+
+    public Stream<OffsetDateTime> fetchDepartureDates(String filter, int offset, int limit) {
+        return repository.findDepartureDates(filter, offset, limit);
+    }
+
+    public int countDepartureDates(String filter) {
+        return repository.countDepartureDates(filter);
+    }
+
+    public CompletableFuture<List<Flight>> findAllFlightsAsync() {
+        return repository.findAllFlightsAsync();
+    }
+
     public FlightDetails findFlightDetails(Flight flight, SearchTerm searchTerm) throws FlightNotFoundException {
+        long start = instrumentation.start();
+        try {
+            return findFlightDetailsUninstrumented(flight, searchTerm);
+        } finally {
+            instrumentation.stop(start, "airport.service", "method", "findFlightDetails");
+        }
+    }
+
+    private FlightDetails findFlightDetailsUninstrumented(Flight flight, SearchTerm searchTerm)
+            throws FlightNotFoundException {
         if (flight != null && flight.getId() != null) {
             return repository.getFlightDetails(flight).orElseThrow(FlightNotFoundException::new);
         } else {
@@ -39,20 +89,25 @@ public class Service {
         }
     }
 
-    public Map<String, Double> getWeights(FlightDetails flightDetails) {
-        Map<String, Double> weights = new HashMap<>();
-        double cargoWeight = flightDetails.getCargo().stream().mapToDouble(cargo ->
-            cargo.getWeightUnit().equals("kg") ? cargo.getWeight() : cargo.getWeight() * LB_CONVERT_TO_KG_VALUE)
-                .sum();
+    public FlightWeights getWeights(FlightDetails flightDetails) {
+        long start = instrumentation.start();
+        try {
+            return flightDetails.getWeights();
+        } finally {
+            instrumentation.stop(start, "airport.service", "method", "getWeights");
+        }
+    }
 
-        double baggageWeight = flightDetails.getBaggage().stream().mapToDouble(baggage ->
-            baggage.getWeightUnit().equals("kg") ? baggage.getWeight() : baggage.getWeight() * LB_CONVERT_TO_KG_VALUE)
-                .sum();
+    public CompletableFuture<Optional<Flight>> findFlightByIdAsync(int flightId) {
+        return repository.findFlightByIdAsync(flightId);
+    }
 
-        weights.put("cargo", Math.round(cargoWeight * 100.0) / 100.0);
-        weights.put("baggage", Math.round(baggageWeight * 100.0) / 100.0);
-        weights.put("total", Math.round((cargoWeight + baggageWeight) * 100.0) / 100.0);
-        return weights;
+    public Flight findFlightByFlightNumber(int flightNumber) throws FlightNotFoundException {
+        return repository.getFlightByFlightNumber(flightNumber).orElseThrow(FlightNotFoundException::new);
+    }
+
+    public Flight findFlightByDepartureDate(OffsetDateTime departureDate) throws FlightNotFoundException {
+        return repository.getFlightByDate(departureDate).orElseThrow(FlightNotFoundException::new);
     }
 
     public Flight findFlightById(int flightId) throws FlightNotFoundException {
@@ -68,52 +123,295 @@ public class Service {
 
     public Set<OffsetDateTime> getDepartureDates(){ return repository.getDepartureDates(); }
 
+    /**
+     * Writes every flight of the current catalog with its weights to the output stream, see {@link FlightExport}.
+     * Weights come from the statistics index; details of flights missing from it are loaded in batches without
+     * being cached or indexed.
+     */
+    public void exportFlights(ExportFormat format, OutputStream outputStream) throws IOException {
+        long start = instrumentation.start();
+        try {
+            FlightExport.write(repository.getCatalog().getFlights(), format, outputStream, this::loadWeights);
+        } finally {
+            instrumentation.stop(start, "airport.service", "method", "exportFlights");
+        }
+    }
+
+    /**
+     * Weights of many flights by flight number, resolved from the catalog. Weights in the statistics index are
+     * used as they are; the rest is loaded with batched details requests, so upstream failures propagate instead
+     * of leaving flights out.
+     *
+     * @return weights keyed by flight number, in request order
+     * @throws FlightNotFoundException naming the flight numbers not in the catalog or without details
+     */
+    public Map<Integer, FlightWeights> getWeightsByFlightNumber(List<Integer> flightNumbers)
+            throws FlightNotFoundException {
+        if (flightNumbers.size() > MAX_BULK_WEIGHTS)
+            throw new IllegalArgumentException("At most " + MAX_BULK_WEIGHTS + " flight numbers per request");
+        if (flightNumbers.contains(null))
+            throw new IllegalArgumentException("Flight numbers must not be empty");
+        long start = instrumentation.start();
+        try {
+            Map<Integer, Flight> flights = new LinkedHashMap<>();
+            Set<Integer> notFound = new LinkedHashSet<>();
+            for (Integer flightNumber : flightNumbers) {
+                if (!flights.containsKey(flightNumber))
+                    repository.getFlightByFlightNumber(flightNumber).ifPresentOrElse(
+                            flight -> flights.put(flightNumber, flight), () -> notFound.add(flightNumber));
+            }
+            List<Flight> missing = new ArrayList<>();
+            Map<Integer, FlightWeights> weightsById = knownWeights(flights.values(), missing);
+            if (!missing.isEmpty())
+                repository.getFlightDetails(missing).forEach((flightId, flightDetails) ->
+                        weightsById.put(flightId, flightDetails.getWeights()));
+
+            Map<Integer, FlightWeights> weights = new LinkedHashMap<>();
+            flights.forEach((flightNumber, flight) -> {
+                FlightWeights flightWeights = flight.getId() != null ? weightsById.get(flight.getId()) : null;
+                if (flightWeights != null)
+                    weights.put(flightNumber, flightWeights);
+                else
+                    notFound.add(flightNumber);
+            });
+            if (!notFound.isEmpty())
+                throw new FlightNotFoundException("Flights not found: " + notFound);
+            return weights;
+        } finally {
+            instrumentation.stop(start, "airport.service", "method", "getWeightsByFlightNumber");
+        }
+    }
+
+    private CompletableFuture<Map<Integer, FlightWeights>> loadWeights(List<Flight> flights) {
+        List<Flight> missing = new ArrayList<>();
+        Map<Integer, FlightWeights> weights = knownWeights(flights, missing);
+        if (missing.isEmpty())
+            return CompletableFuture.completedFuture(weights);
+        return repository.loadFlightDetailsUncachedAsync(missing).thenApply(details -> {
+            details.forEach((flightId, flightDetails) -> weights.put(flightId, flightDetails.getWeights()));
+            return weights;
+        });
+    }
+
+    /**
+     * @return weights of the flights known to the statistics index keyed by flight id; flights with an id but
+     * without known weights are added to {@code missing}
+     */
+    private Map<Integer, FlightWeights> knownWeights(Collection<Flight> flights, List<Flight> missing) {
+        Map<Integer, FlightWeights> weights = new HashMap<>();
+        for (Flight flight : flights) {
+            if (flight.getId() == null)
+                continue;
+            FlightWeights known = statisticsIndex.getWeights(flight.getId());
+            if (known != null)
+                weights.put(flight.getId(), known);
+            else
+                missing.add(flight);
+        }
+        return weights;
+    }
+
+    /**
+     * @return point-in-time copy of the details cache and upstream counters, which are also published as meters
+     * under {@code /actuator/metrics}
+     */
+    public Map<String, Long> getDetailsCacheStatistics() {
+        return repository.getDetailsCacheStatistics();
+    }
+
     public Map<String, Integer> getFlightsStatistics(String code, OffsetDateTime dateTime) {
-        List<Flight> flights = repository.getFlights();
-        List<Flight> departures = getDepartures(code, flights, dateTime);
-        List<Flight> arrivals = getArrivals(code, flights, dateTime);
-        return buildStatisticsMap(departures, arrivals);
-    }
-
-    private Map<String, Integer> buildStatisticsMap(List<Flight> departures, List<Flight> arrivals) {
-        Map<String, Integer> flightsStatistics = new HashMap<>();
-        int baggageArriving = getBaggagePieces(arrivals);
-        int baggageDeparting = getBaggagePieces(departures);
-        flightsStatistics.put("departures", departures.size());
-        flightsStatistics.put("arrivals", arrivals.size());
-        flightsStatistics.put("baggageArriving", baggageArriving);
-        flightsStatistics.put("baggageDeparting", baggageDeparting);
-        return flightsStatistics;
-    }
-
-    private int getBaggagePieces(List<Flight> flights) {
-        List<Baggage> baggage = flights.stream().map(flight -> {
-            var flightOptional = repository.getFlightDetails(flight);
-            if (flightOptional.isPresent())
-                return flightOptional.get().getBaggage();
-            return new ArrayList<Baggage>();
-        }).flatMap(List::stream).collect(Collectors.toList());
-
-        return baggage.stream().mapToInt(value -> value.getPieces()).sum();
-    }
-
-    private List<Flight> getDepartures(String code, List<Flight> flights, OffsetDateTime dateTime) {
-        if (dateTime != null) {
-            return flights.stream().filter(flight ->
-                    flight.getDepartureAirportIATACode().equals(code) && flight.getDepartureDate().equals(dateTime))
-                    .collect(Collectors.toList());
+        long start = instrumentation.start();
+        try {
+            return statisticsIndex.getStatistics(code, dateTime);
+        } finally {
+            instrumentation.stop(start, "airport.service", "method", "getFlightsStatistics");
+        }
+    }
+
+    /**
+     * Statistics of flights departing within {@code [from, to)}, found by binary search over the airport's
+     * sorted departure times. Arrivals are matched by departure date as well, like the single-date statistics.
+     */
+    public Map<String, Integer> getFlightsStatistics(String code, Instant from, Instant to) {
+        long start = instrumentation.start();
+        try {
+            FlightCatalog catalog = repository.getCatalog();
+            StatisticsBucket statistics = statisticsBetween(catalog, catalog.getDepartureTimeline(code),
+                    catalog.getArrivalTimeline(code), from, from, to);
+            Map<String, Integer> flightsStatistics = new HashMap<>();
+            flightsStatistics.put("departures", statistics.getDepartures());
+            flightsStatistics.put("arrivals", statistics.getArrivals());
+            flightsStatistics.put("baggageArriving", statistics.getBaggageArriving());
+            flightsStatistics.put("baggageDeparting", statistics.getBaggageDeparting());
+            return flightsStatistics;
+        } finally {
+            instrumentation.stop(start, "airport.service", "method", "getFlightsStatisticsRange");
+        }
+    }
+
+    /**
+     * Hourly or daily (UTC) statistics buckets covering {@code [from, to)}.
+     */
+    public List<StatisticsBucket> getFlightsHistogram(String code, Instant from, Instant to, ChronoUnit bucket) {
+        if (bucket != ChronoUnit.HOURS && bucket != ChronoUnit.DAYS)
+            throw new IllegalArgumentException("Histogram buckets must be hours or days");
+        if (bucket.getDuration().multipliedBy(MAX_HISTOGRAM_BUCKETS).compareTo(Duration.between(from, to)) < 0)
+            throw new IllegalArgumentException("Histogram range exceeds " + MAX_HISTOGRAM_BUCKETS + " buckets");
+        FlightCatalog catalog = repository.getCatalog();
+        AirportTimeline departures = catalog.getDepartureTimeline(code);
+        AirportTimeline arrivals = catalog.getArrivalTimeline(code);
+        List<StatisticsBucket> histogram = new ArrayList<>();
+        for (Instant bucketStart = from.truncatedTo(bucket); bucketStart.isBefore(to);
+             bucketStart = bucketStart.plus(1, bucket)) {
+            Instant rangeStart = bucketStart.isBefore(from) ? from : bucketStart;
+            Instant bucketEnd = bucketStart.plus(1, bucket);
+            histogram.add(statisticsBetween(catalog, departures, arrivals, bucketStart, rangeStart,
+                    bucketEnd.isAfter(to) ? to : bucketEnd));
+        }
+        return histogram;
+    }
+
+    private StatisticsBucket statisticsBetween(FlightCatalog catalog, AirportTimeline departures,
+                                               AirportTimeline arrivals, Instant bucketStart, Instant from,
+                                               Instant to) {
+        int departuresFrom = departures.lowerBound(ceilEpochSecond(from));
+        int departuresTo = Math.max(departuresFrom, departures.lowerBound(ceilEpochSecond(to)));
+        int arrivalsFrom = arrivals.lowerBound(ceilEpochSecond(from));
+        int arrivalsTo = Math.max(arrivalsFrom, arrivals.lowerBound(ceilEpochSecond(to)));
+        return new StatisticsBucket(bucketStart, departuresTo - departuresFrom, arrivalsTo - arrivalsFrom,
+                statisticsIndex.sumBaggagePieces(catalog, departures, departuresFrom, departuresTo),
+                statisticsIndex.sumBaggagePieces(catalog, arrivals, arrivalsFrom, arrivalsTo));
+    }
+
+    static long ceilEpochSecond(Instant instant) {
+        return instant.getNano() > 0 ? instant.getEpochSecond() + 1 : instant.getEpochSecond();
+    }
+
+    /**
+     * Flights departing within {@code [from, to)}, optionally from one airport, with the greatest total weight.
+     * Flights whose details have not been loaded yet are not ranked.
+     */
+    public List<RankedFlight> getHeaviestDepartures(String code, Instant from, Instant to, int limit) {
+        checkLeaderboardSize(limit);
+        long start = instrumentation.start();
+        try {
+            FlightCatalog catalog = repository.getCatalog();
+            TopN<RankedFlight> heaviest = new TopN<>(limit,
+                    Comparator.comparingDouble(rankedFlight -> rankedFlight.getWeights().getTotal()));
+            if (code != null) {
+                AirportTimeline departures = catalog.getDepartureTimeline(code);
+                int end = departures.lowerBound(ceilEpochSecond(to));
+                for (int i = departures.lowerBound(ceilEpochSecond(from)); i < end; i++)
+                    rank(catalog.getColumns().flight(departures.row(i)), heaviest);
+            } else {
+                int end = catalog.departureIndex(ceilEpochSecond(to));
+                for (int i = catalog.departureIndex(ceilEpochSecond(from)); i < end; i++)
+                    rank(catalog.departureAt(i), heaviest);
+            }
+            return heaviest.toList();
+        } finally {
+            instrumentation.stop(start, "airport.service", "method", "getHeaviestDepartures");
+        }
+    }
+
+    private void rank(Flight flight, TopN<RankedFlight> heaviest) {
+        FlightWeights weights = flight.getId() != null ? statisticsIndex.getWeights(flight.getId()) : null;
+        if (weights != null)
+            heaviest.offer(new RankedFlight(flight, weights));
+    }
+
+    /**
+     * Airports with the most baggage pieces, departing and arriving together. Without a range the all-time
+     * counters of the statistics index are ranked, otherwise flights departing within {@code [from, to)}.
+     */
+    public List<RankedAirport> getBusiestAirports(Instant from, Instant to, int limit) {
+        checkLeaderboardSize(limit);
+        long start = instrumentation.start();
+        try {
+            if (from == null || to == null)
+                return statisticsIndex.getBusiestAirports(limit);
+            FlightCatalog catalog = repository.getCatalog();
+            TopN<RankedAirport> busiest = new TopN<>(limit, Comparator.comparingInt(RankedAirport::getBaggagePieces));
+            for (String code : catalog.getAirportCodes()) {
+                StatisticsBucket statistics = statisticsBetween(catalog, catalog.getDepartureTimeline(code),
+                        catalog.getArrivalTimeline(code), from, from, to);
+                busiest.offer(new RankedAirport(code, statistics.getDepartures(), statistics.getArrivals(),
+                        statistics.getBaggageDeparting(), statistics.getBaggageArriving()));
+            }
+            return busiest.toList();
+        } finally {
+            instrumentation.stop(start, "airport.service", "method", "getBusiestAirports");
         }
-        return flights.stream().filter(flight ->
-                flight.getDepartureAirportIATACode().equals(code)).collect(Collectors.toList());
     }
 
-    private List<Flight> getArrivals(String code, List<Flight> flights, OffsetDateTime dateTime) {
-        if (dateTime != null){
-            return flights.stream().filter(flight ->
-                    flight.getArrivalAirportIATACode().equals(code) && flight.getDepartureDate().equals(dateTime))
-                    .collect(Collectors.toList());
+    /**
+     * Statistics of every airport in one parallel pass over the catalog, of all flights or of flights departing
+     * within {@code [from, to)} when both are given.
+     *
+     * @return one entry per airport code, in code order
+     */
+    public List<RankedAirport> getAllAirportsStatistics(Instant from, Instant to) {
+        long start = instrumentation.start();
+        try {
+            return AirportStatisticsTask.compute(repository.getCatalog(), statisticsIndex, from, to);
+        } finally {
+            instrumentation.stop(start, "airport.service", "method", "getAllAirportsStatistics");
         }
-        return flights.stream()
-                .filter(flight -> flight.getArrivalAirportIATACode().equals(code)).collect(Collectors.toList());
+    }
+
+    /**
+     * Type-ahead suggestions answered from memory, see {@link SuggestIndex}.
+     *
+     * @return flight numbers starting with the typed digits, in ascending order
+     */
+    public Stream<Integer> suggestFlightNumbers(String prefix, int offset, int limit) {
+        checkSuggestionPage(offset, limit);
+        return repository.getCatalog().getSuggestIndex().findFlightNumbers(trim(prefix), offset, limit).boxed();
+    }
+
+    public int countFlightNumberSuggestions(String prefix) {
+        return repository.getCatalog().getSuggestIndex().countFlightNumbers(trim(prefix));
+    }
+
+    /**
+     * @return airport codes starting with the typed text, ignoring case, in ascending order
+     */
+    public Stream<String> suggestAirportCodes(String prefix, int offset, int limit) {
+        checkSuggestionPage(offset, limit);
+        return repository.getCatalog().getSuggestIndex().findAirportCodes(trim(prefix), offset, limit);
+    }
+
+    public int countAirportCodeSuggestions(String prefix) {
+        return repository.getCatalog().getSuggestIndex().countAirportCodes(trim(prefix));
+    }
+
+    private static String trim(String prefix) {
+        return prefix != null ? prefix.trim() : null;
+    }
+
+    private static void checkSuggestionPage(int offset, int limit) {
+        if (offset < 0 || limit < 0 || limit > MAX_SUGGESTIONS)
+            throw new IllegalArgumentException("Suggestions are limited to " + MAX_SUGGESTIONS + " per request");
+    }
+
+    private static void checkLeaderboardSize(int limit) {
+        if (limit < 1 || limit > MAX_LEADERBOARD_SIZE)
+            throw new IllegalArgumentException("Leaderboard size must be between 1 and " + MAX_LEADERBOARD_SIZE);
+    }
+
+    /**
+     * @return a number that changes whenever any airport statistics change
+     */
+    public long getStatisticsVersion() {
+        return statisticsIndex.getVersion();
+    }
+
+    /**
+     * Registers a listener called after each catalog refresh that changed flights or details.
+     *
+     * @return action removing the listener again
+     */
+    public Runnable addCatalogChangeListener(Consumer<CatalogChanges> listener) {
+        return repository.addCatalogChangeListener(listener);
     }
 }
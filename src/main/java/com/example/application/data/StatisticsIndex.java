@@ -0,0 +1,349 @@
+package com.example.application.data;
+
+import com.example.application.model.Flight;
+import com.example.application.model.FlightDetails;
+import com.example.application.model.FlightWeights;
+import com.example.application.model.RankedAirport;
+import com.example.application.utils.IntIntMap;
+import com.example.application.utils.TopN;
+import org.springframework.stereotype.Component;
+
+import java.time.OffsetDateTime;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+
+/**
+ * Per-airport statistics kept up to date as flights and details change, so that statistics lookups are plain map
+ * reads without touching the upstream service. Statistics of one departure date are counted on request from the
+ * catalog's {@link AirportTimeline}s.
+ * <p>
+ * Baggage pieces and weights of flights with known details are kept in primitive arrays indexed by the rows of the
+ * indexed catalog, weights in hundredths of a kilogram, about 16 bytes per flight. A new set of arrays is built for
+ * every catalog and published with a single reference swap, so baggage pieces can be read without the lock, for
+ * leaderboards and parallel aggregation.
+ */
+@Component
+class StatisticsIndex {
+
+    private static final AirportStatistics NO_STATISTICS = new AirportStatistics();
+    private static final int UNKNOWN = -1;
+
+    private final Map<String, AirportStatistics> byAirport = new HashMap<>();
+    /**
+     * Details of flights the indexed catalog does not contain yet, moved into the arrays once it does.
+     */
+    private final Map<Integer, Totals> pending = new HashMap<>();
+    private volatile Rows rows = new Rows(FlightCatalog.EMPTY);
+    private volatile long version;
+
+    long getVersion() {
+        return version;
+    }
+
+    /**
+     * @return copy of the known baggage pieces keyed by flight id
+     */
+    synchronized Map<Integer, Integer> getBaggagePieces() {
+        Map<Integer, Integer> baggagePieces = new HashMap<>();
+        FlightColumns columns = rows.catalog.getColumns();
+        rows.catalog.forEachRowWithId(row -> {
+            if (rows.pieces[row] != UNKNOWN)
+                baggagePieces.put(columns.id(row), rows.pieces[row]);
+        });
+        pending.forEach((flightId, totals) -> baggagePieces.put(flightId, totals.pieces));
+        return baggagePieces;
+    }
+
+    /**
+     * @return known baggage pieces of the flight, 0 when its details are not known
+     */
+    int getBaggagePieces(int flightId) {
+        Rows current = rows;
+        return current.pieces(current.catalog.rowOf(flightId));
+    }
+
+    /**
+     * @return known baggage pieces of the flight in the catalog's row, 0 when its details are not known
+     */
+    int getBaggagePieces(FlightCatalog catalog, int row) {
+        Rows current = rows;
+        if (current.catalog == catalog)
+            return current.pieces(row);
+        FlightColumns columns = catalog.getColumns();
+        return columns.hasId(row) ? current.pieces(current.catalog.rowOf(columns.id(row))) : 0;
+    }
+
+    /**
+     * @return baggage pieces of the flights of the catalog's timeline in the index range {@code [from, to)}
+     */
+    int sumBaggagePieces(FlightCatalog catalog, AirportTimeline timeline, int from, int to) {
+        int pieces = 0;
+        for (int i = from; i < to; i++)
+            pieces += getBaggagePieces(catalog, timeline.row(i));
+        return pieces;
+    }
+
+    /**
+     * @return weights of the flight, or {@code null} when its details are not known
+     */
+    synchronized FlightWeights getWeights(int flightId) {
+        int row = rows.catalog.rowOf(flightId);
+        if (row != IntIntMap.MISSING)
+            return rows.weights(row);
+        Totals totals = pending.get(flightId);
+        return totals != null ? totals.weights : null;
+    }
+
+    /**
+     * @return baggage pieces and weights of the flight read together, or {@code null} when its details are not
+     * known
+     */
+    synchronized Totals getTotals(int flightId) {
+        int row = rows.catalog.rowOf(flightId);
+        if (row == IntIntMap.MISSING)
+            return pending.get(flightId);
+        FlightWeights weights = rows.weights(row);
+        return weights != null ? new Totals(rows.pieces[row], weights) : null;
+    }
+
+    /**
+     * @return airports with the most baggage pieces, departing and arriving together, most first
+     */
+    synchronized List<RankedAirport> getBusiestAirports(int limit) {
+        TopN<RankedAirport> busiest = new TopN<>(limit, Comparator.comparingInt(RankedAirport::getBaggagePieces));
+        byAirport.forEach((code, statistics) -> busiest.offer(statistics.toRankedAirport(code)));
+        return busiest.toList();
+    }
+
+    /**
+     * Statistics of one departure date are counted from the flights of the airport's timelines departing in that
+     * epoch second with the same offset.
+     */
+    synchronized Map<String, Integer> getStatistics(String code, OffsetDateTime dateTime) {
+        if (dateTime != null) {
+            AirportStatistics atDate = new AirportStatistics();
+            countAt(rows.catalog.getDepartureTimeline(code), dateTime, pieces -> atDate.addDeparture(1, pieces));
+            countAt(rows.catalog.getArrivalTimeline(code), dateTime, pieces -> atDate.addArrival(1, pieces));
+            return atDate.toMap();
+        }
+        return byAirport.getOrDefault(code, NO_STATISTICS).toMap();
+    }
+
+    /**
+     * Brings the index in line with a new catalog, touching the airport statistics only for flights that were
+     * added, changed or removed. Baggage and weights of the flights kept are carried over to the new rows.
+     *
+     * @return flights whose baggage is not known yet and whose details should be loaded
+     */
+    synchronized List<Flight> applyFlights(FlightCatalog current) {
+        Rows previous = rows;
+        Rows next = new Rows(current);
+        FlightColumns columns = current.getColumns();
+        FlightColumns previousColumns = previous.catalog.getColumns();
+        List<Flight> withoutDetails = new ArrayList<>();
+        current.forEachRowWithId(row -> {
+            int id = columns.id(row);
+            int previousRow = previous.catalog.rowOf(id);
+            if (previousRow != IntIntMap.MISSING)
+                next.copy(row, previous, previousRow);
+            else if (pending.containsKey(id))
+                next.set(row, pending.remove(id));
+            Flight flight = columns.flight(row);
+            if (previousRow == IntIntMap.MISSING || !previousColumns.flight(previousRow).equals(flight)) {
+                if (previousRow != IntIntMap.MISSING)
+                    count(previous, previousRow, -1);
+                count(next, row, 1);
+            }
+            if (next.pieces[row] == UNKNOWN)
+                withoutDetails.add(flight);
+        });
+        previous.catalog.forEachRowWithId(row -> {
+            if (current.rowOf(previousColumns.id(row)) == IntIntMap.MISSING)
+                count(previous, row, -1);
+        });
+        rows = next;
+        return withoutDetails;
+    }
+
+    synchronized void applyDetails(FlightDetails flightDetails) {
+        apply(flightDetails.getFlightId(), flightDetails.getBaggagePieces(), flightDetails.getWeights());
+    }
+
+    /**
+     * Restores the baggage pieces and weights of a flight without its details, e.g. from a snapshot.
+     */
+    synchronized void applyTotals(int flightId, int pieces, FlightWeights weights) {
+        apply(flightId, pieces, weights);
+    }
+
+    /**
+     * Forgets the baggage and weights of a flight whose details were removed upstream.
+     */
+    synchronized void removeBaggagePieces(int flightId) {
+        if (pending.remove(flightId) != null)
+            version++;
+        int row = rows.catalog.rowOf(flightId);
+        if (row == IntIntMap.MISSING || rows.pieces[row] == UNKNOWN)
+            return;
+        addBaggagePieces(row, -rows.pieces[row]);
+        rows.pieces[row] = UNKNOWN;
+        rows.setWeights(row, null);
+        version++;
+    }
+
+    private void apply(int flightId, int pieces, FlightWeights weights) {
+        int row = rows.catalog.rowOf(flightId);
+        if (row == IntIntMap.MISSING) {
+            pending.put(flightId, new Totals(pieces, weights));
+            version++;
+            return;
+        }
+        int previous = rows.pieces[row];
+        if (previous == pieces && weights.equals(rows.weights(row)))
+            return;
+        rows.pieces[row] = pieces;
+        rows.setWeights(row, weights);
+        addBaggagePieces(row, pieces - Math.max(previous, 0));
+        version++;
+    }
+
+    private void addBaggagePieces(int row, int delta) {
+        if (delta == 0)
+            return;
+        FlightColumns columns = rows.catalog.getColumns();
+        update(code(columns, columns.departureCode(row)), statistics -> statistics.addDepartingBaggage(delta));
+        update(code(columns, columns.arrivalCode(row)), statistics -> statistics.addArrivingBaggage(delta));
+    }
+
+    private void count(Rows source, int row, int sign) {
+        FlightColumns columns = source.catalog.getColumns();
+        String departureCode = code(columns, columns.departureCode(row));
+        String arrivalCode = code(columns, columns.arrivalCode(row));
+        int pieces = source.pieces(row);
+        update(departureCode, statistics -> statistics.addDeparture(sign, pieces));
+        update(arrivalCode, statistics -> statistics.addArrival(sign, pieces));
+        if (sign < 0) {
+            removeEmpty(departureCode);
+            removeEmpty(arrivalCode);
+        }
+    }
+
+    /**
+     * Counts the canonical flights, those {@link FlightCatalog#rowOf(int)} returns, of the timeline departing at
+     * exactly the date-time, passing each one's baggage pieces.
+     */
+    private void countAt(AirportTimeline timeline, OffsetDateTime dateTime, IntConsumer counter) {
+        if (dateTime.getNano() != 0)
+            return;
+        FlightColumns columns = rows.catalog.getColumns();
+        long epochSecond = dateTime.toEpochSecond();
+        int offsetSeconds = dateTime.getOffset().getTotalSeconds();
+        for (int i = timeline.lowerBound(epochSecond), end = timeline.lowerBound(epochSecond + 1); i < end; i++) {
+            int row = timeline.row(i);
+            if (columns.offsetSeconds(row) == offsetSeconds && rows.catalog.isCanonical(row))
+                counter.accept(rows.pieces(row));
+        }
+    }
+
+    private static String code(FlightColumns columns, int codeIndex) {
+        return codeIndex != FlightColumns.NONE ? columns.code(codeIndex) : null;
+    }
+
+    private void update(String code, Consumer<AirportStatistics> update) {
+        version++;
+        update.accept(byAirport.computeIfAbsent(code, key -> new AirportStatistics()));
+    }
+
+    private void removeEmpty(String code) {
+        byAirport.computeIfPresent(code, (key, statistics) -> statistics.isEmpty() ? null : statistics);
+    }
+
+    /**
+     * Baggage pieces and weights per row of one catalog; {@link #UNKNOWN} marks rows without details.
+     * Written only while holding the index lock.
+     */
+    private static final class Rows {
+
+        final FlightCatalog catalog;
+        final int[] pieces;
+        final int[] cargo;
+        final int[] baggage;
+        final int[] total;
+
+        Rows(FlightCatalog catalog) {
+            int size = catalog.getColumns().size();
+            this.catalog = catalog;
+            pieces = new int[size];
+            cargo = new int[size];
+            baggage = new int[size];
+            total = new int[size];
+            Arrays.fill(pieces, UNKNOWN);
+            Arrays.fill(total, UNKNOWN);
+        }
+
+        /**
+         * @return baggage pieces of the row, 0 when unknown or for {@link IntIntMap#MISSING}
+         */
+        int pieces(int row) {
+            return row != IntIntMap.MISSING ? Math.max(pieces[row], 0) : 0;
+        }
+
+        FlightWeights weights(int row) {
+            if (total[row] == UNKNOWN)
+                return null;
+            return new FlightWeights(cargo[row] / 100.0, baggage[row] / 100.0, total[row] / 100.0);
+        }
+
+        void setWeights(int row, FlightWeights weights) {
+            if (weights == null) {
+                total[row] = UNKNOWN;
+                return;
+            }
+            cargo[row] = hundredths(weights.getCargo());
+            baggage[row] = hundredths(weights.getBaggage());
+            total[row] = hundredths(weights.getTotal());
+        }
+
+        void copy(int row, Rows from, int fromRow) {
+            pieces[row] = from.pieces[fromRow];
+            cargo[row] = from.cargo[fromRow];
+            baggage[row] = from.baggage[fromRow];
+            total[row] = from.total[fromRow];
+        }
+
+        void set(int row, Totals totals) {
+            pieces[row] = totals.pieces;
+            setWeights(row, totals.weights);
+        }
+
+        /**
+         * {@link FlightWeights} are rounded to two decimals, so the conversion is exact.
+         */
+        private static int hundredths(double kilograms) {
+            return Math.toIntExact(Math.round(kilograms * 100));
+        }
+    }
+
+    /**
+     * Baggage pieces and weights of one flight.
+     */
+    static final class Totals {
+
+        private final int pieces;
+        private final FlightWeights weights;
+
+        private Totals(int pieces, FlightWeights weights) {
+            this.pieces = pieces;
+            this.weights = weights;
+        }
+
+        int getPieces() {
+            return pieces;
+        }
+
+        FlightWeights getWeights() {
+            return weights;
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.example.application.data;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Type-ahead lookups over one catalog. Flight numbers are kept as a sorted array of distinct {@code int}s. The
+ * numbers starting with a digit prefix form one contiguous range per number of digits, so they come out in
+ * ascending order. Airport codes are kept as a sorted array, where the codes starting with a prefix are a single
+ * range. Every lookup takes a few binary searches, and only the requested page is copied.
+ */
+final class SuggestIndex {
+
+    private static final int MAX_DIGITS = 10;
+
+    private final int[] flightNumbers;
+    private final String[] airportCodes;
+
+    /**
+     * @param flightNumbers distinct flight numbers in ascending order
+     * @param airportCodes  distinct airport codes in ascending order
+     */
+    SuggestIndex(int[] flightNumbers, String[] airportCodes) {
+        this.flightNumbers = flightNumbers;
+        this.airportCodes = airportCodes;
+    }
+
+    /**
+     * @return flight numbers whose decimal form starts with the prefix, in ascending order; all of them for an
+     * empty prefix
+     */
+    IntStream findFlightNumbers(String prefix, int offset, int limit) {
+        IntStream.Builder page = IntStream.builder();
+        int skip = offset;
+        int remaining = limit;
+        for (int[] range : flightNumberRanges(prefix)) {
+            int size = range[1] - range[0];
+            if (skip >= size) {
+                skip -= size;
+                continue;
+            }
+            int end = (int) Math.min(range[1], (long) range[0] + skip + remaining);
+            for (int i = range[0] + skip; i < end; i++)
+                page.add(flightNumbers[i]);
+            remaining -= end - range[0] - skip;
+            skip = 0;
+            if (remaining == 0)
+                break;
+        }
+        return page.build();
+    }
+
+    int countFlightNumbers(String prefix) {
+        int count = 0;
+        for (int[] range : flightNumberRanges(prefix))
+            count += range[1] - range[0];
+        return count;
+    }
+
+    /**
+     * @return airport codes starting with the prefix, ignoring case, in ascending order
+     */
+    Stream<String> findAirportCodes(String prefix, int offset, int limit) {
+        int[] range = airportCodeRange(prefix);
+        int from = (int) Math.min((long) range[0] + offset, range[1]);
+        int to = (int) Math.min((long) from + limit, range[1]);
+        return Arrays.stream(airportCodes, from, to);
+    }
+
+    int countAirportCodes(String prefix) {
+        int[] range = airportCodeRange(prefix);
+        return range[1] - range[0];
+    }
+
+    /**
+     * @return index ranges {@code [from, to)} of {@link #flightNumbers} matching the prefix, one per number of digits
+     */
+    private int[][] flightNumberRanges(String prefix) {
+        if (prefix == null || prefix.isEmpty())
+            return new int[][]{{0, flightNumbers.length}};
+        if (prefix.length() > MAX_DIGITS || !prefix.chars().allMatch(c -> c >= '0' && c <= '9')
+                || (prefix.charAt(0) == '0' && prefix.length() > 1))
+            return new int[0][];
+        long value = Long.parseLong(prefix);
+        if (value == 0)
+            return new int[][]{range(0, 0)};
+        int[][] ranges = new int[MAX_DIGITS - prefix.length() + 1][];
+        long scale = 1;
+        for (int i = 0; i < ranges.length; i++, scale *= 10) {
+            long low = value * scale;
+            if (low > Integer.MAX_VALUE)
+                return Arrays.copyOf(ranges, i);
+            ranges[i] = range(low, Math.min((value + 1) * scale - 1, Integer.MAX_VALUE));
+        }
+        return ranges;
+    }
+
+    private int[] range(long low, long high) {
+        return new int[]{lowerBound(low), lowerBound(high + 1)};
+    }
+
+    /**
+     * @return index of the first flight number not less than the key
+     */
+    private int lowerBound(long key) {
+        int low = 0;
+        int high = flightNumbers.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (flightNumbers[middle] < key)
+                low = middle + 1;
+            else
+                high = middle;
+        }
+        return low;
+    }
+
+    private int[] airportCodeRange(String prefix) {
+        if (prefix == null || prefix.isEmpty())
+            return new int[]{0, airportCodes.length};
+        String key = prefix.toUpperCase(Locale.ROOT);
+        return new int[]{lowerBound(key), lowerBound(key + Character.MAX_VALUE)};
+    }
+
+    private int lowerBound(String key) {
+        int index = Arrays.binarySearch(airportCodes, key);
+        return index >= 0 ? index : -index - 1;
+    }
+}
@@ -0,0 +1,167 @@
+package com.example.application.data;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.web.client.ResourceAccessException;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Bounds the time callers wait for one upstream endpoint. Each call runs on the given executor and the caller
+ * waits at most the deadline. When hedging is on and the call has not answered within the p95 of recent
+ * latencies, a duplicate request is sent and the first answer wins. A bulkhead caps the requests in flight to the
+ * endpoint, hedges included; calls beyond it fail at once instead of queueing.
+ * <p>
+ * Failures are reported as {@link ResourceAccessException}, like the I/O errors of {@code RestTemplate}.
+ * Requests left behind after the deadline run until the client's socket timeout and keep their bulkhead permit
+ * until then. The request must be free of side effects, because with hedging it can run twice.
+ * <p>
+ * The counters are published next to the {@code airport.upstream.requests} timers, tagged with the endpoint.
+ */
+final class UpstreamGuard {
+
+    private static final int SAMPLES = 128;
+    private static final int MIN_SAMPLES = 20;
+
+    private final String endpoint;
+    private final ExecutorService executor;
+    private final int maxConcurrent;
+    private final Semaphore permits;
+    private final long deadlineNanos;
+    private final boolean hedge;
+    private final long minHedgeDelayNanos;
+    private final long[] latencies = new long[SAMPLES];
+    private long samples;
+    private final LongAdder hedged = new LongAdder();
+    private final LongAdder deadlineExceeded = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    UpstreamGuard(String endpoint, ExecutorService executor, int maxConcurrent, long deadlineMillis, boolean hedge,
+                  long minHedgeDelayMillis) {
+        this.endpoint = endpoint;
+        this.executor = executor;
+        this.maxConcurrent = maxConcurrent;
+        this.permits = new Semaphore(maxConcurrent);
+        this.deadlineNanos = TimeUnit.MILLISECONDS.toNanos(deadlineMillis);
+        this.hedge = hedge;
+        this.minHedgeDelayNanos = TimeUnit.MILLISECONDS.toNanos(minHedgeDelayMillis);
+    }
+
+    <T> T call(Supplier<T> request) {
+        long start = System.nanoTime();
+        CompletableFuture<T> result = new CompletableFuture<>();
+        AtomicInteger running = new AtomicInteger();
+        if (!attempt(request, result, running)) {
+            rejected.increment();
+            throw new ResourceAccessException("Too many concurrent requests to " + endpoint);
+        }
+        try {
+            long hedgeDelay = hedge ? hedgeDelayNanos() : deadlineNanos;
+            if (hedgeDelay < deadlineNanos) {
+                try {
+                    return result.get(hedgeDelay, TimeUnit.NANOSECONDS);
+                } catch (TimeoutException e) {
+                    if (attempt(request, result, running))
+                        hedged.increment();
+                }
+            }
+            return result.get(deadlineNanos - (System.nanoTime() - start), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            deadlineExceeded.increment();
+            throw new ResourceAccessException(endpoint + " did not answer within "
+                    + TimeUnit.NANOSECONDS.toMillis(deadlineNanos) + " ms");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            if (e.getCause() instanceof Error)
+                throw (Error) e.getCause();
+            throw new ResourceAccessException(endpoint + " failed: " + e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ResourceAccessException("Interrupted while waiting for " + endpoint);
+        }
+    }
+
+    /**
+     * @return numbers of hedged requests, calls that exceeded the deadline and calls rejected by the bulkhead
+     */
+    Map<String, Long> getStatistics() {
+        Map<String, Long> statistics = new LinkedHashMap<>();
+        statistics.put("hedged", hedged.sum());
+        statistics.put("deadlineExceeded", deadlineExceeded.sum());
+        statistics.put("rejected", rejected.sum());
+        return statistics;
+    }
+
+    void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("airport.upstream.hedged", hedged, LongAdder::sum)
+                .description("Duplicate requests sent after the p95 latency")
+                .tag("endpoint", endpoint).register(registry);
+        FunctionCounter.builder("airport.upstream.deadline.exceeded", deadlineExceeded, LongAdder::sum)
+                .description("Calls that got no answer within the deadline")
+                .tag("endpoint", endpoint).register(registry);
+        FunctionCounter.builder("airport.upstream.rejected", rejected, LongAdder::sum)
+                .description("Calls rejected because the bulkhead was full")
+                .tag("endpoint", endpoint).register(registry);
+        Gauge.builder("airport.upstream.in.flight", permits, semaphore -> maxConcurrent - semaphore.availablePermits())
+                .description("Requests holding a bulkhead permit, hedges and abandoned requests included")
+                .tag("endpoint", endpoint).register(registry);
+    }
+
+    /**
+     * Starts one request if the bulkhead has room. The result fails only once every started request has failed.
+     */
+    private <T> boolean attempt(Supplier<T> request, CompletableFuture<T> result, AtomicInteger running) {
+        if (!permits.tryAcquire())
+            return false;
+        running.incrementAndGet();
+        try {
+            executor.execute(() -> {
+                long start = System.nanoTime();
+                try {
+                    T value = request.get();
+                    recordLatency(System.nanoTime() - start);
+                    result.complete(value);
+                } catch (RuntimeException | Error e) {
+                    if (running.decrementAndGet() == 0)
+                        result.completeExceptionally(e);
+                } finally {
+                    permits.release();
+                }
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            running.decrementAndGet();
+            permits.release();
+            return false;
+        }
+    }
+
+    private void recordLatency(long nanos) {
+        synchronized (latencies) {
+            latencies[(int) (samples++ % SAMPLES)] = nanos;
+        }
+    }
+
+    /**
+     * @return p95 of the recent latencies, at least the minimum delay, or the deadline while there are too few
+     * samples to tell a slow answer from a normal one
+     */
+    private long hedgeDelayNanos() {
+        long[] recent;
+        synchronized (latencies) {
+            if (samples < MIN_SAMPLES)
+                return deadlineNanos;
+            recent = Arrays.copyOf(latencies, (int) Math.min(samples, SAMPLES));
+        }
+        Arrays.sort(recent);
+        return Math.max(minHedgeDelayNanos, recent[(int) Math.ceil(recent.length * 0.95) - 1]);
+    }
+}
@@ -0,0 +1,95 @@
+package com.example.application.instrumentation;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Thin timing and counting facade over Micrometer that can be switched on and off at runtime
+ * (see {@link InstrumentationEndpoint}). While disabled, every call is a single volatile read. Meters are looked
+ * up in the registry once per name and tags and then reused, so a call costs one hash lookup.
+ * <pre>
+ * long start = instrumentation.start();
+ * try { ... } finally { instrumentation.stop(start, "airport.service", "method", "getWeights"); }
+ * </pre>
+ */
+@Component
+public class Instrumentation {
+
+    private final MeterRegistry meterRegistry;
+    private final Map<MeterKey, Timer> timers = new ConcurrentHashMap<>();
+    private final Map<MeterKey, Counter> counters = new ConcurrentHashMap<>();
+    private final Map<MeterKey, DistributionSummary> summaries = new ConcurrentHashMap<>();
+    private volatile boolean enabled;
+
+    public Instrumentation(MeterRegistry meterRegistry, @Value("${instrumentation.enabled:true}") boolean enabled) {
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * @return start time to pass to {@link #stop}, or 0 when instrumentation is disabled
+     */
+    public long start() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    public void stop(long start, String name, String... tags) {
+        if (start != 0)
+            timers.computeIfAbsent(new MeterKey(name, tags), key -> meterRegistry.timer(name, tags))
+                    .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+
+    public void count(String name, String... tags) {
+        if (enabled)
+            counters.computeIfAbsent(new MeterKey(name, tags), key -> meterRegistry.counter(name, tags)).increment();
+    }
+
+    public void record(String name, double amount, String... tags) {
+        if (enabled)
+            summaries.computeIfAbsent(new MeterKey(name, tags), key -> meterRegistry.summary(name, tags))
+                    .record(amount);
+    }
+
+    private static final class MeterKey {
+
+        private final String name;
+        private final String[] tags;
+        private final int hash;
+
+        private MeterKey(String name, String[] tags) {
+            this.name = name;
+            this.tags = tags;
+            this.hash = 31 * name.hashCode() + Arrays.hashCode(tags);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof MeterKey))
+                return false;
+            MeterKey other = (MeterKey) o;
+            return name.equals(other.name) && Arrays.equals(tags, other.tags);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.example.application.instrumentation;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * {@code /actuator/instrumentation}: GET shows whether hot-path metrics are recorded,
+ * POST {@code {"enabled": false}} switches them off without a restart.
+ */
+@Component
+@Endpoint(id = "instrumentation")
+public class InstrumentationEndpoint {
+
+    private final Instrumentation instrumentation;
+
+    public InstrumentationEndpoint(Instrumentation instrumentation) {
+        this.instrumentation = instrumentation;
+    }
+
+    @ReadOperation
+    public Map<String, Boolean> status() {
+        return Collections.singletonMap("enabled", instrumentation.isEnabled());
+    }
+
+    @WriteOperation
+    public Map<String, Boolean> setEnabled(boolean enabled) {
+        instrumentation.setEnabled(enabled);
+        return status();
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.application.instrumentation;
+
+import com.example.application.utils.ClosingClientHttpResponse;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+
+import java.io.IOException;
+
+/**
+ * Records latency, errors and received bytes of every upstream request, tagged with the json-server
+ * collection ({@code flight} or {@code details}) it targets. Latency runs until the response is closed, so it
+ * includes reading and parsing the body.
+ */
+public class UpstreamMetricsInterceptor implements ClientHttpRequestInterceptor {
+
+    private final Instrumentation instrumentation;
+
+    public UpstreamMetricsInterceptor(Instrumentation instrumentation) {
+        this.instrumentation = instrumentation;
+    }
+
+    @Override
+    public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution)
+            throws IOException {
+        String endpoint = endpoint(request);
+        long start = instrumentation.start();
+        ClientHttpResponse response;
+        try {
+            response = execution.execute(request, body);
+        } catch (IOException | RuntimeException e) {
+            complete(start, endpoint, true);
+            throw e;
+        }
+        boolean error = isError(response);
+        long contentLength = response.getHeaders().getContentLength();
+        if (contentLength >= 0)
+            instrumentation.record("airport.upstream.received", contentLength, "endpoint", endpoint);
+        return new ClosingClientHttpResponse(response, () -> complete(start, endpoint, error));
+    }
+
+    private void complete(long start, String endpoint, boolean error) {
+        instrumentation.stop(start, "airport.upstream.requests", "endpoint", endpoint,
+                "outcome", error ? "error" : "success");
+        if (error)
+            instrumentation.count("airport.upstream.errors", "endpoint", endpoint);
+    }
+
+    private static boolean isError(ClientHttpResponse response) {
+        try {
+            return response.getRawStatusCode() >= 400;
+        } catch (IOException e) {
+            return true;
+        }
+    }
+
+    private static String endpoint(HttpRequest request) {
+        String path = request.getURI().getPath();
+        int start = path.startsWith("/") ? 1 : 0;
+        int end = path.indexOf('/', start);
+        return end < 0 ? path.substring(start) : path.substring(start, end);
+    }
+}
@@ -7,16 +7,19 @@ abstract class AbstractCargo {
 
     private int id;
     private int weight;
-    private String weightUnit;
+    private WeightUnit weightUnit;
     private int pieces;
 
     public AbstractCargo(){}
 
-    public AbstractCargo(int id, int weight, String weightUnit, int pieces) {
+    public AbstractCargo(int id, int weight, WeightUnit weightUnit, int pieces) {
         this.id = id;
         this.weight = weight;
         this.weightUnit = weightUnit;
         this.pieces = pieces;
     }
 
+    public double getWeightInKilograms() {
+        return weightUnit != null ? weightUnit.toKilograms(weight) : weight;
+    }
 }
@@ -5,7 +5,7 @@ public class Baggage extends AbstractCargo {
 
     public Baggage() {}
 
-    public Baggage(int id, int weight, String weightUnit, int pieces) {
+    public Baggage(int id, int weight, WeightUnit weightUnit, int pieces) {
         super(id, weight, weightUnit, pieces);
     }
 }
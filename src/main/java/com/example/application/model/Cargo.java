@@ -5,7 +5,7 @@ public class Cargo extends AbstractCargo {
 
     public Cargo() {}
 
-    public Cargo(int id, int weight, String weightUnit, int pieces) {
+    public Cargo(int id, int weight, WeightUnit weightUnit, int pieces) {
         super(id, weight, weightUnit, pieces);
     }
 }
@@ -1,21 +1,60 @@
 package com.example.application.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.Setter;
+import lombok.ToString;
 
 import java.util.List;
 
 @Data
+@JsonIgnoreProperties(value = {"weights", "baggagePieces"}, allowGetters = true)
 public class FlightDetails {
 
     private int flightId;
     private List<Baggage> baggage;
     private List<Cargo> cargo;
 
+    /** Derived from baggage and cargo whenever either list is set. */
+    @Setter(AccessLevel.NONE) @EqualsAndHashCode.Exclude @ToString.Exclude
+    private FlightWeights weights = FlightWeights.NONE;
+    @Setter(AccessLevel.NONE) @EqualsAndHashCode.Exclude @ToString.Exclude
+    private int baggagePieces;
+
     public FlightDetails(){}
 
     public FlightDetails(int flightId, List<Baggage> baggage, List<Cargo> cargo) {
         this.flightId = flightId;
         this.baggage = baggage;
         this.cargo = cargo;
+        computeTotals();
+    }
+
+    public void setBaggage(List<Baggage> baggage) {
+        this.baggage = baggage;
+        computeTotals();
+    }
+
+    public void setCargo(List<Cargo> cargo) {
+        this.cargo = cargo;
+        computeTotals();
+    }
+
+    private void computeTotals() {
+        double cargoKilograms = 0;
+        double baggageKilograms = 0;
+        int pieces = 0;
+        if (cargo != null)
+            for (Cargo item : cargo)
+                cargoKilograms += item.getWeightInKilograms();
+        if (baggage != null)
+            for (Baggage item : baggage) {
+                baggageKilograms += item.getWeightInKilograms();
+                pieces += item.getPieces();
+            }
+        weights = FlightWeights.of(cargoKilograms, baggageKilograms);
+        baggagePieces = pieces;
     }
 }
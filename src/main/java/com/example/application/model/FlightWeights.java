@@ -0,0 +1,28 @@
+package com.example.application.model;
+
+import lombok.Value;
+
+/**
+ * Cargo, baggage and total weight of a flight in kilograms, rounded to two decimal places.
+ */
+@Value
+public class FlightWeights {
+
+    public static final FlightWeights NONE = of(0, 0);
+
+    double cargo;
+    double baggage;
+    double total;
+
+    /**
+     * @return weights rounded to two decimal places, the total rounded from the unrounded sum
+     */
+    public static FlightWeights of(double cargoKilograms, double baggageKilograms) {
+        return new FlightWeights(round(cargoKilograms), round(baggageKilograms),
+                round(cargoKilograms + baggageKilograms));
+    }
+
+    private static double round(double kilograms) {
+        return Math.round(kilograms * 100.0) / 100.0;
+    }
+}
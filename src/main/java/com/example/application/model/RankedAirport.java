@@ -0,0 +1,20 @@
+package com.example.application.model;
+
+import lombok.Value;
+
+/**
+ * Flights and baggage pieces of one airport, as ranked by the busiest airports leaderboard.
+ */
+@Value
+public class RankedAirport {
+
+    String code;
+    int departures;
+    int arrivals;
+    int baggageDeparting;
+    int baggageArriving;
+
+    public int getBaggagePieces() {
+        return baggageDeparting + baggageArriving;
+    }
+}
@@ -0,0 +1,13 @@
+package com.example.application.model;
+
+import lombok.Value;
+
+/**
+ * A flight together with its weights, as ranked by the heaviest departures leaderboard.
+ */
+@Value
+public class RankedFlight {
+
+    Flight flight;
+    FlightWeights weights;
+}
@@ -0,0 +1,18 @@
+package com.example.application.model;
+
+import lombok.Value;
+
+import java.time.Instant;
+
+/**
+ * Departure and arrival statistics of one airport within one histogram bucket starting at {@link #getStart()}.
+ */
+@Value
+public class StatisticsBucket {
+
+    Instant start;
+    int departures;
+    int arrivals;
+    int baggageDeparting;
+    int baggageArriving;
+}
@@ -0,0 +1,34 @@
+package com.example.application.model;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonValue;
+
+public enum WeightUnit {
+
+    KG("kg", 1.0), LB("lb", 0.45359237);
+
+    private final String code;
+    private final double kilograms;
+
+    WeightUnit(String code, double kilograms) {
+        this.code = code;
+        this.kilograms = kilograms;
+    }
+
+    public double toKilograms(int weight) {
+        return weight * kilograms;
+    }
+
+    @JsonValue
+    public String getCode() {
+        return code;
+    }
+
+    /**
+     * Maps the feed's unit string to a unit; anything other than {@code kg} is treated as pounds.
+     */
+    @JsonCreator
+    public static WeightUnit fromCode(String code) {
+        return KG.code.equalsIgnoreCase(code) ? KG : LB;
+    }
+}
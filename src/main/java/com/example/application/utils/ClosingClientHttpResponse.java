@@ -0,0 +1,60 @@
+package com.example.application.utils;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpResponse;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Response that runs an action once it is closed. {@code RestTemplate} closes the response after its extractor
+ * has read the body, so interceptors can use this to cover the whole exchange rather than the time to headers.
+ */
+public final class ClosingClientHttpResponse implements ClientHttpResponse {
+
+    private final ClientHttpResponse response;
+    private final Runnable onClose;
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    public ClosingClientHttpResponse(ClientHttpResponse response, Runnable onClose) {
+        this.response = response;
+        this.onClose = onClose;
+    }
+
+    @Override
+    public HttpStatus getStatusCode() throws IOException {
+        return response.getStatusCode();
+    }
+
+    @Override
+    public int getRawStatusCode() throws IOException {
+        return response.getRawStatusCode();
+    }
+
+    @Override
+    public String getStatusText() throws IOException {
+        return response.getStatusText();
+    }
+
+    @Override
+    public HttpHeaders getHeaders() {
+        return response.getHeaders();
+    }
+
+    @Override
+    public InputStream getBody() throws IOException {
+        return response.getBody();
+    }
+
+    @Override
+    public void close() {
+        try {
+            response.close();
+        } finally {
+            if (closed.compareAndSet(false, true))
+                onClose.run();
+        }
+    }
+}
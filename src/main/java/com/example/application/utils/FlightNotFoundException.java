@@ -5,4 +5,8 @@ public class FlightNotFoundException extends Exception {
     public FlightNotFoundException(){
         super("Flight not found");
     }
+
+    public FlightNotFoundException(String message){
+        super(message);
+    }
 }
@@ -0,0 +1,87 @@
+package com.example.application.utils;
+
+import java.util.Arrays;
+
+/**
+ * Open addressing hash map from primitive {@code int} keys to non-negative {@code int} values, without boxing.
+ * Grows when half full. Not thread safe; intended to be filled once and then only read.
+ */
+public final class IntIntMap {
+
+    public static final int MISSING = -1;
+
+    private int[] keys;
+    private int[] values;
+    private int mask;
+    private int size;
+
+    public IntIntMap(int expectedSize) {
+        allocate(Integer.highestOneBit(Math.max(expectedSize, 2) * 2 - 1) << 1);
+    }
+
+    /**
+     * Stores the value unless the key is already mapped.
+     *
+     * @return the value already mapped to the key, or {@link #MISSING} if the value was stored
+     */
+    public int putIfAbsent(int key, int value) {
+        if (value < 0)
+            throw new IllegalArgumentException("Negative values are not supported");
+        if (size >= (mask + 1) / 2)
+            grow();
+        int slot = slot(key);
+        while (values[slot] != MISSING) {
+            if (keys[slot] == key)
+                return values[slot];
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        size++;
+        return MISSING;
+    }
+
+    /**
+     * @return the value mapped to the key, or {@link #MISSING}
+     */
+    public int get(int key) {
+        int slot = slot(key);
+        while (values[slot] != MISSING) {
+            if (keys[slot] == key)
+                return values[slot];
+            slot = (slot + 1) & mask;
+        }
+        return MISSING;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        values = new int[capacity];
+        Arrays.fill(values, MISSING);
+        mask = capacity - 1;
+    }
+
+    private void grow() {
+        int[] oldKeys = keys;
+        int[] oldValues = values;
+        allocate(oldKeys.length * 2);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldValues[i] == MISSING)
+                continue;
+            int slot = slot(oldKeys[i]);
+            while (values[slot] != MISSING)
+                slot = (slot + 1) & mask;
+            keys[slot] = oldKeys[i];
+            values[slot] = oldValues[i];
+        }
+    }
+
+    private int slot(int key) {
+        int hash = key * 0x9E3779B9;
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+}
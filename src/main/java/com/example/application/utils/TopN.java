@@ -0,0 +1,44 @@
+package com.example.application.utils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Keeps the {@code limit} greatest values offered, in O(log limit) per value and O(limit) memory, by holding them
+ * in a min-heap whose head is the first value to be displaced. Not thread safe.
+ */
+public final class TopN<T> {
+
+    private final int limit;
+    private final Comparator<? super T> order;
+    private final PriorityQueue<T> heap;
+
+    public TopN(int limit, Comparator<? super T> order) {
+        if (limit < 1)
+            throw new IllegalArgumentException("Limit must be positive");
+        this.limit = limit;
+        this.order = order;
+        this.heap = new PriorityQueue<>(Math.min(limit, 1024), order);
+    }
+
+    public void offer(T value) {
+        if (heap.size() < limit) {
+            heap.add(value);
+        } else if (order.compare(value, heap.peek()) > 0) {
+            heap.poll();
+            heap.add(value);
+        }
+    }
+
+    /**
+     * @return the kept values, greatest first
+     */
+    public List<T> toList() {
+        List<T> values = new ArrayList<>(heap);
+        values.sort(Collections.reverseOrder(order));
+        return values;
+    }
+}
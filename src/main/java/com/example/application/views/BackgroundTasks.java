@@ -0,0 +1,79 @@
+package com.example.application.views;
+
+import com.example.application.instrumentation.Instrumentation;
+import com.vaadin.flow.component.Component;
+import com.vaadin.flow.component.HasEnabled;
+import com.vaadin.flow.component.UI;
+import com.vaadin.flow.component.UIDetachedException;
+import com.vaadin.flow.component.notification.Notification;
+import com.vaadin.flow.component.progressbar.ProgressBar;
+import com.vaadin.flow.server.Command;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
+
+/**
+ * Runs the slow work of a view on the UI executor so the request thread is released at once, and pushes the
+ * result back to the browser when it is ready.
+ */
+final class BackgroundTasks {
+
+    private final Instrumentation instrumentation;
+    private final ExecutorService uiExecutor;
+
+    BackgroundTasks(Instrumentation instrumentation, ExecutorService uiExecutor) {
+        this.instrumentation = instrumentation;
+        this.uiExecutor = uiExecutor;
+    }
+
+    /**
+     * Runs the task, showing the progress bar and disabling the trigger meanwhile. The task returns the command
+     * that applies its result, which is run under the session lock; a failure of the task is passed to the error
+     * handler instead, also under the session lock.
+     */
+    void run(String action, ProgressBar progressBar, Component trigger, Callable<Command> task,
+             Consumer<Throwable> onError) {
+        UI ui = UI.getCurrent();
+        long start = instrumentation.start();
+        setLoading(progressBar, trigger, true);
+        try {
+            CompletableFuture.supplyAsync(() -> {
+                try {
+                    return task.call();
+                } catch (Exception e) {
+                    throw new CompletionException(e);
+                }
+            }, uiExecutor).whenComplete((update, error) -> {
+                instrumentation.stop(start, "airport.view", "action", action);
+                try {
+                    ui.access(() -> {
+                        setLoading(progressBar, trigger, false);
+                        if (error == null)
+                            update.execute();
+                        else
+                            onError.accept(error instanceof CompletionException ? error.getCause() : error);
+                    });
+                } catch (UIDetachedException e) {
+                    // the user left the view, nothing to update
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            setLoading(progressBar, trigger, false);
+            Notification.show("The server is busy, please try again.", 5000, Notification.Position.MIDDLE);
+        }
+    }
+
+    static void showError(Throwable error) {
+        Notification.show("Could not load data: " + error.getMessage(), 5000, Notification.Position.MIDDLE);
+    }
+
+    private static void setLoading(ProgressBar progressBar, Component trigger, boolean loading) {
+        progressBar.setVisible(loading);
+        if (trigger instanceof HasEnabled)
+            ((HasEnabled) trigger).setEnabled(!loading);
+    }
+}
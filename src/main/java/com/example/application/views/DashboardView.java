@@ -0,0 +1,137 @@
+package com.example.application.views;
+
+import com.example.application.data.Service;
+import com.example.application.instrumentation.Instrumentation;
+import com.example.application.model.RankedAirport;
+import com.vaadin.flow.component.AttachEvent;
+import com.vaadin.flow.component.DetachEvent;
+import com.vaadin.flow.component.UI;
+import com.vaadin.flow.component.UIDetachedException;
+import com.vaadin.flow.component.button.Button;
+import com.vaadin.flow.component.datetimepicker.DateTimePicker;
+import com.vaadin.flow.component.dependency.CssImport;
+import com.vaadin.flow.component.grid.Grid;
+import com.vaadin.flow.component.html.H2;
+import com.vaadin.flow.component.html.Paragraph;
+import com.vaadin.flow.component.notification.Notification;
+import com.vaadin.flow.component.orderedlayout.HorizontalLayout;
+import com.vaadin.flow.component.orderedlayout.VerticalLayout;
+import com.vaadin.flow.component.progressbar.ProgressBar;
+import com.vaadin.flow.router.PageTitle;
+import com.vaadin.flow.router.Route;
+import com.vaadin.flow.router.RouterLink;
+import com.vaadin.flow.shared.Registration;
+import org.springframework.beans.factory.annotation.Qualifier;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Departures, arrivals and baggage of every airport at once, computed in one parallel pass over the catalog.
+ */
+@Route(value = "dashboard")
+@PageTitle("Airport dashboard")
+@CssImport("./themes/airport/views/dashboard-view.css")
+public class DashboardView extends VerticalLayout {
+
+    private final Service service;
+    private final BackgroundTasks backgroundTasks;
+    private final Grid<RankedAirport> airportsGrid = new Grid<>(RankedAirport.class, false);
+    private final Paragraph totals = new Paragraph();
+    private final ProgressBar progressBar = new ProgressBar();
+    private final DateTimePicker fromPicker = new DateTimePicker("From (UTC)");
+    private final DateTimePicker toPicker = new DateTimePicker("To (UTC)");
+    private final Button refreshButton = new Button("Refresh");
+    private Registration catalogChangeRegistration;
+
+    public DashboardView(Service service, Instrumentation instrumentation,
+                         @Qualifier("uiExecutor") ExecutorService uiExecutor) {
+        this.service = service;
+        this.backgroundTasks = new BackgroundTasks(instrumentation, uiExecutor);
+        addClassName("dashboard-view");
+
+        airportsGrid.setColumns("code", "departures", "arrivals", "baggageDeparting", "baggageArriving",
+                "baggagePieces");
+        progressBar.setIndeterminate(true);
+        progressBar.setVisible(false);
+        refreshButton.addClickListener(event -> refresh());
+
+        Paragraph paragraph = new Paragraph("Statistics of all airports. Pick a time range or leave it empty " +
+                "for the entire time.");
+        add(new H2("Dashboard"), new RouterLink("Flights", MainView.class), paragraph,
+                new HorizontalLayout(fromPicker, toPicker, refreshButton), progressBar, totals, airportsGrid);
+    }
+
+    @Override
+    protected void onAttach(AttachEvent attachEvent) {
+        UI ui = attachEvent.getUI();
+        Runnable removeListener = service.addCatalogChangeListener(changes -> {
+            try {
+                ui.access(this::refreshIfRangeValid);
+            } catch (UIDetachedException e) {
+                // detached concurrently, the registration is removed in onDetach
+            }
+        });
+        catalogChangeRegistration = removeListener::run;
+        refreshIfRangeValid();
+    }
+
+    @Override
+    protected void onDetach(DetachEvent detachEvent) {
+        catalogChangeRegistration.remove();
+        catalogChangeRegistration = null;
+    }
+
+    /**
+     * Refreshes on the user's request, telling them when the chosen range is invalid.
+     */
+    private void refresh() {
+        if (!isRangeValid()) {
+            Notification.show("Choose a range with the start before the end, or no range.", 5000,
+                    Notification.Position.MIDDLE);
+            return;
+        }
+        load();
+    }
+
+    /**
+     * Refreshes without user input, e.g. after a catalog change, skipping it silently while the range is invalid
+     * so that an invalid range left in the pickers does not raise a notification on every change.
+     */
+    private void refreshIfRangeValid() {
+        if (isRangeValid())
+            load();
+    }
+
+    private boolean isRangeValid() {
+        LocalDateTime from = fromPicker.getValue();
+        LocalDateTime to = toPicker.getValue();
+        return (from == null) == (to == null) && (from == null || from.isBefore(to));
+    }
+
+    private void load() {
+        LocalDateTime from = fromPicker.getValue();
+        LocalDateTime to = toPicker.getValue();
+        Instant fromInstant = from != null ? from.toInstant(ZoneOffset.UTC) : null;
+        Instant toInstant = to != null ? to.toInstant(ZoneOffset.UTC) : null;
+
+        backgroundTasks.run("allAirportsStatistics", progressBar, refreshButton, () -> {
+            List<RankedAirport> statistics = service.getAllAirportsStatistics(fromInstant, toInstant);
+            return () -> setStatistics(statistics);
+        }, BackgroundTasks::showError);
+    }
+
+    private void setStatistics(List<RankedAirport> statistics) {
+        airportsGrid.setItems(statistics);
+        int departures = 0;
+        int baggage = 0;
+        for (RankedAirport airport : statistics) {
+            departures += airport.getDepartures();
+            baggage += airport.getBaggageDeparting();
+        }
+        totals.setText("Airports: " + statistics.size() + ", flights: " + departures + ", baggage pieces: " + baggage);
+    }
+}
@@ -1,13 +1,24 @@
 package com.example.application.views;
 
 import com.example.application.SearchTerm;
+import com.example.application.data.CatalogChanges;
 import com.example.application.data.Service;
+import com.example.application.instrumentation.Instrumentation;
 import com.example.application.model.Flight;
 import com.example.application.model.FlightDetails;
+import com.example.application.model.FlightWeights;
+import com.example.application.model.RankedAirport;
+import com.example.application.model.RankedFlight;
 import com.example.application.utils.FlightNotFoundException;
 import com.flowingcode.vaadin.addons.fontawesome.FontAwesome;
+import com.vaadin.flow.component.AttachEvent;
+import com.vaadin.flow.component.Component;
+import com.vaadin.flow.component.DetachEvent;
+import com.vaadin.flow.component.UI;
+import com.vaadin.flow.component.UIDetachedException;
 import com.vaadin.flow.component.button.Button;
 import com.vaadin.flow.component.combobox.ComboBox;
+import com.vaadin.flow.component.datetimepicker.DateTimePicker;
 import com.vaadin.flow.component.dependency.CssImport;
 import com.vaadin.flow.component.grid.Grid;
 import com.vaadin.flow.component.html.H2;
@@ -16,16 +27,28 @@ import com.vaadin.flow.component.html.Paragraph;
 import com.vaadin.flow.component.notification.Notification;
 import com.vaadin.flow.component.orderedlayout.HorizontalLayout;
 import com.vaadin.flow.component.orderedlayout.VerticalLayout;
-import com.vaadin.flow.component.textfield.IntegerField;
+import com.vaadin.flow.component.progressbar.ProgressBar;
 import com.vaadin.flow.data.binder.BeanValidationBinder;
+import com.vaadin.flow.data.provider.QuerySortOrder;
+import com.vaadin.flow.data.provider.SortDirection;
 import com.vaadin.flow.router.PageTitle;
 import com.vaadin.flow.router.Route;
 import com.vaadin.flow.router.RouteAlias;
+import com.vaadin.flow.router.RouterLink;
+import com.vaadin.flow.server.Command;
+import com.vaadin.flow.shared.Registration;
+import org.springframework.beans.factory.annotation.Qualifier;
 
+import java.time.Instant;
+import java.time.LocalDateTime;
 import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
 
 @Route(value = "")
 @RouteAlias(value = "")
@@ -33,7 +56,10 @@ import java.util.stream.Collectors;
 @CssImport("./themes/airport/views/main-view.css")
 public class MainView extends VerticalLayout {
 
+    private static final int LEADERBOARD_SIZE = 20;
+
     private final Service service;
+    private final BackgroundTasks backgroundTasks;
     private final Paragraph cargoWeightText = new Paragraph("Cargo weight: ");
     private final Paragraph baggageWeightText = new Paragraph("Baggage weight: ");
     private final Paragraph totalWeight = new Paragraph("Total weight: ");
@@ -44,11 +70,23 @@ public class MainView extends VerticalLayout {
     private final BeanValidationBinder<Flight> flightBinder = new BeanValidationBinder<>(Flight.class);
     private final H4 flightNumberText = new H4("Flight number: ");
     private final H4 details = new H4("Details: ");
+    private final ProgressBar flightDetailsProgress = createProgressBar();
+    private final ProgressBar statisticsProgress = createProgressBar();
+    private final ProgressBar leaderboardProgress = createProgressBar();
+    private final Grid<RankedFlight> heaviestDeparturesGrid = new Grid<>();
+    private final Grid<RankedAirport> busiestAirportsGrid = new Grid<>(RankedAirport.class, false);
+    private final List<ComboBox<?>> catalogComboBoxes = new ArrayList<>();
+    private final Grid<Flight> flightGrid;
+    private Runnable refreshStatistics;
+    private Registration catalogChangeRegistration;
 
-    public MainView(Service service) {
+    public MainView(Service service, Instrumentation instrumentation,
+                    @Qualifier("uiExecutor") ExecutorService uiExecutor) {
         this.service = service;
+        this.backgroundTasks = new BackgroundTasks(instrumentation, uiExecutor);
+        long start = instrumentation.start();
         addClassName("main-view");
-        Grid<Flight> flightGrid = createFlightGrid(service);
+        flightGrid = createFlightGrid(service);
 
         H2 title = new H2();
         String html = "<iron-icon id='planeIcon' icon='" + FontAwesome.Solid.PLANE.getIconName() + "'></iron-icon>"
@@ -60,31 +98,38 @@ public class MainView extends VerticalLayout {
         VerticalLayout rightVertical = createRightLayout();
         rightVertical.setId("rightVertical");
 
-        VerticalLayout leftResultLayout = new VerticalLayout(flightNumberText, cargoWeightText, baggageWeightText,
-                totalWeight);
+        VerticalLayout leftResultLayout = new VerticalLayout(flightDetailsProgress, flightNumberText, cargoWeightText,
+                baggageWeightText, totalWeight);
         leftResultLayout.setId("leftResultLayout");
 
-        VerticalLayout rightResultLayout = new VerticalLayout(details, arrivalFlights, departureFlights, arrivalBaggage,
-                departureBaggage);
+        VerticalLayout rightResultLayout = new VerticalLayout(statisticsProgress, details, arrivalFlights,
+                departureFlights, arrivalBaggage, departureBaggage);
         rightResultLayout.setId("rightResultLayout");
 
-        VerticalLayout topVertical = new VerticalLayout(title, flightGrid);
+        VerticalLayout topVertical = new VerticalLayout(title, new RouterLink("All airports dashboard",
+                DashboardView.class), flightGrid);
         topVertical.setId("topVertical");
         add(topVertical, new HorizontalLayout(
                 new VerticalLayout(leftVertical, leftResultLayout),
-                new VerticalLayout(rightVertical, rightResultLayout))
+                new VerticalLayout(rightVertical, rightResultLayout)),
+                createLeaderboardLayout()
         );
+        instrumentation.stop(start, "airport.view", "action", "build");
     }
 
     private Grid<Flight> createFlightGrid(Service service) {
         Grid<Flight> flightGrid = new Grid<>(Flight.class);
-        List<Flight> allFlights = service.findAllFlights();
         flightGrid.setSelectionMode(Grid.SelectionMode.SINGLE);
-        flightGrid.setItems(allFlights);
+        flightGrid.setItems(query -> {
+            QuerySortOrder sortOrder = query.getSortOrders().isEmpty() ? null : query.getSortOrders().get(0);
+            return service.fetchFlights(query.getOffset(), query.getLimit(),
+                    sortOrder != null ? sortOrder.getSorted() : null,
+                    sortOrder != null && sortOrder.getDirection() == SortDirection.DESCENDING);
+        }, query -> service.countFlights());
         flightGrid.asSingleSelect().addValueChangeListener(event -> {
             Flight flight = event.getValue();
             if (flight != null)
-                flightBinder.setBean(flight);
+                flightBinder.setBean(copyOf(flight));
             else
                 flightBinder.setBean(new Flight());
         });
@@ -92,24 +137,35 @@ public class MainView extends VerticalLayout {
     }
 
     private VerticalLayout createLeftLayout() {
-        IntegerField flightNumberField = new IntegerField("Flight number:");
+        ComboBox<Integer> flightNumberField = new ComboBox<>("Flight number:");
+        catalogComboBoxes.add(flightNumberField);
+        flightNumberField.setItems(
+                query -> service.suggestFlightNumbers(query.getFilter().orElse(null), query.getOffset(),
+                        query.getLimit()),
+                query -> service.countFlightNumberSuggestions(query.getFilter().orElse(null)));
+        flightNumberField.setAllowCustomValue(true);
+        flightNumberField.addCustomValueSetListener(event -> {
+            try {
+                flightNumberField.setValue(Integer.valueOf(event.getDetail().trim()));
+            } catch (NumberFormatException e) {
+                flightNotFoundNotification();
+            }
+        });
         Button flightNumberButton = new Button("Details");
         flightNumberButton.addClickListener(buttonClickEvent -> {
             if (flightBinder.isValid())
-                getFlightDetails(flightBinder.getBean(), SearchTerm.FLIGHT_NUMBER);
+                getFlightDetails(copyOf(flightBinder.getBean()), SearchTerm.FLIGHT_NUMBER, flightNumberButton);
         });
         flightBinder.forField(flightNumberField).bind(Flight::getFlightNumber, Flight::setFlightNumber);
 
         ComboBox<OffsetDateTime> dateTimePiker = new ComboBox<>("Date:");
         dateTimePiker.setId("date-piker");
-        List<OffsetDateTime> departureDates = service.findAllFlights().stream().map(Flight::getDepartureDate)
-                .collect(Collectors.toList());
-        dateTimePiker.setItems(departureDates);
+        setDepartureDateItems(dateTimePiker);
 
         Button departureDateButton = new Button("Details");
         departureDateButton.addClickListener(buttonClickEvent -> {
             if (flightBinder.isValid())
-                getFlightDetails(dateTimePiker.getValue());
+                getFlightDetails(dateTimePiker.getValue(), departureDateButton);
         });
 
         flightBinder.forField(dateTimePiker).bind("departureDate");
@@ -136,33 +192,35 @@ public class MainView extends VerticalLayout {
         return leftVertical;
     }
 
-    private void getFlightDetails(OffsetDateTime departureDate) {
+    private void setDepartureDateItems(ComboBox<OffsetDateTime> comboBox) {
+        catalogComboBoxes.add(comboBox);
+        comboBox.setItems(
+                query -> service.fetchDepartureDates(query.getFilter().orElse(null), query.getOffset(),
+                        query.getLimit()),
+                query -> service.countDepartureDates(query.getFilter().orElse(null)));
+    }
+
+    private void getFlightDetails(OffsetDateTime departureDate, Button button) {
         if (departureDate != null)
-            getFlightDetails(new Flight(departureDate), SearchTerm.DATE);
+            getFlightDetails(new Flight(departureDate), SearchTerm.DATE, button);
         else
             flightNotFoundNotification();
     }
 
-    private void getFlightDetails(Flight flight, SearchTerm searchTerm) {
-        try {
+    private void getFlightDetails(Flight flight, SearchTerm searchTerm, Button button) {
+        runInBackground("flightDetails", flightDetailsProgress, button, () -> {
             FlightDetails flightDetails = service.findFlightDetails(flight, searchTerm);
-            Map<String, Double> cargoWeight = service.getWeights(flightDetails);
-            setFlightDetails(cargoWeight, flightDetails);
-        } catch (FlightNotFoundException e) {
-            flightNotFoundNotification();
-        }
+            FlightWeights weights = service.getWeights(flightDetails);
+            Flight found = service.findFlightById(flightDetails.getFlightId());
+            return () -> setFlightDetails(weights, found);
+        });
     }
 
-    private void setFlightDetails(Map<String, Double> cargoWeight, FlightDetails flightDetails) {
-        try {
-            Flight flight = service.findFlightById(flightDetails.getFlightId());
-            flightNumberText.setText("Flight number: " + flight.getFlightNumber());
-            cargoWeightText.setText( "Cargo weight: " + cargoWeight.get("cargo").toString() + " kg");
-            baggageWeightText.setText("Baggage weight: " + cargoWeight.get("baggage").toString() + " kg");
-            totalWeight.setText("Total weight: " + cargoWeight.get("total").toString() + " kg");
-        } catch (FlightNotFoundException e) {
-            e.printStackTrace();
-        }
+    private void setFlightDetails(FlightWeights weights, Flight flight) {
+        flightNumberText.setText("Flight number: " + flight.getFlightNumber());
+        cargoWeightText.setText( "Cargo weight: " + weights.getCargo() + " kg");
+        baggageWeightText.setText("Baggage weight: " + weights.getBaggage() + " kg");
+        totalWeight.setText("Total weight: " + weights.getTotal() + " kg");
     }
 
     private void flightNotFoundNotification() {
@@ -174,40 +232,104 @@ public class MainView extends VerticalLayout {
 
     private VerticalLayout createRightLayout() {
         ComboBox<String> airportCodeCombobox = new ComboBox<>("Airport code");
-        airportCodeCombobox.setItems(service.getAirportCodes());
+        catalogComboBoxes.add(airportCodeCombobox);
+        airportCodeCombobox.setItems(
+                query -> service.suggestAirportCodes(query.getFilter().orElse(null), query.getOffset(),
+                        query.getLimit()),
+                query -> service.countAirportCodeSuggestions(query.getFilter().orElse(null)));
         Button airportCodeButton = new Button("Details");
 
         ComboBox<OffsetDateTime> dateTimeComboBox = new ComboBox<>("Date");
-        dateTimeComboBox.setItems(service.getDepartureDates());
+        setDepartureDateItems(dateTimeComboBox);
         Button dateTimeButton = new Button("Details");
 
         dateTimeButton.addClickListener(buttonClickEvent -> {
-            getFlightsStatistics(airportCodeCombobox.getValue(), dateTimeComboBox.getValue());
+            getFlightsStatistics(airportCodeCombobox.getValue(), dateTimeComboBox.getValue(), dateTimeButton);
         });
 
         airportCodeButton.addClickListener(event -> {
-            getFlightsStatistics(airportCodeCombobox.getValue(), dateTimeComboBox.getValue());
+            getFlightsStatistics(airportCodeCombobox.getValue(), dateTimeComboBox.getValue(), airportCodeButton);
+        });
+
+        DateTimePicker fromPicker = new DateTimePicker("From (UTC)");
+        DateTimePicker toPicker = new DateTimePicker("To (UTC)");
+        Button rangeButton = new Button("Details");
+        rangeButton.addClickListener(event -> {
+            getFlightsStatistics(airportCodeCombobox.getValue(), fromPicker.getValue(), toPicker.getValue(),
+                    rangeButton);
         });
 
 
         HorizontalLayout inputsLayout = new HorizontalLayout(airportCodeCombobox, airportCodeButton, dateTimeComboBox,
                 dateTimeButton);
+        HorizontalLayout rangeLayout = new HorizontalLayout(fromPicker, toPicker, rangeButton);
 
         Paragraph paragraph = new Paragraph();
         String html = "Select airport code and date to get more info about departures and " +
-                               "arrivals. </br> If the date isn't selected, the statistics for the entire time appear.";
+                               "arrivals. </br> If the date isn't selected, the statistics for the entire time appear." +
+                               "</br> You can also pick a time range.";
         paragraph.getElement().setProperty("innerHTML", html);
-        VerticalLayout rightLayout = new VerticalLayout(paragraph, inputsLayout);
+        VerticalLayout rightLayout = new VerticalLayout(paragraph, inputsLayout, rangeLayout);
         return rightLayout;
     }
 
-    private void getFlightsStatistics(String code, OffsetDateTime dateTime) {
+    private VerticalLayout createLeaderboardLayout() {
+        heaviestDeparturesGrid.addColumn(rankedFlight -> rankedFlight.getFlight().getFlightNumber())
+                .setHeader("Flight number");
+        heaviestDeparturesGrid.addColumn(rankedFlight -> rankedFlight.getFlight().getDepartureAirportIATACode())
+                .setHeader("From");
+        heaviestDeparturesGrid.addColumn(rankedFlight -> rankedFlight.getFlight().getDepartureDate())
+                .setHeader("Departure date");
+        heaviestDeparturesGrid.addColumn(rankedFlight -> rankedFlight.getWeights().getTotal() + " kg")
+                .setHeader("Total weight");
+        busiestAirportsGrid.setColumns("code", "baggagePieces", "baggageDeparting", "baggageArriving", "departures",
+                "arrivals");
+
+        Button heaviestButton = new Button("Top " + LEADERBOARD_SIZE + " heaviest departures today");
+        heaviestButton.addClickListener(event -> {
+            Instant today = Instant.now().truncatedTo(ChronoUnit.DAYS);
+            runInBackground("heaviestDepartures", leaderboardProgress, heaviestButton, () -> {
+                List<RankedFlight> heaviest = service.getHeaviestDepartures(null, today,
+                        today.plus(1, ChronoUnit.DAYS), LEADERBOARD_SIZE);
+                return () -> heaviestDeparturesGrid.setItems(heaviest);
+            });
+        });
+        Button busiestButton = new Button("Busiest airports by baggage");
+        busiestButton.addClickListener(event -> runInBackground("busiestAirports", leaderboardProgress,
+                busiestButton, () -> {
+                    List<RankedAirport> busiest = service.getBusiestAirports(null, null, LEADERBOARD_SIZE);
+                    return () -> busiestAirportsGrid.setItems(busiest);
+                }));
+
+        VerticalLayout leaderboardLayout = new VerticalLayout(new H4("Leaderboards"),
+                new HorizontalLayout(heaviestButton, busiestButton), leaderboardProgress,
+                new HorizontalLayout(heaviestDeparturesGrid, busiestAirportsGrid));
+        leaderboardLayout.setId("leaderboardLayout");
+        return leaderboardLayout;
+    }
+
+    private void getFlightsStatistics(String code, LocalDateTime from, LocalDateTime to, Button button) {
+        if (code == null) {
+            Notification.show("Airport code cannot be not selected.", 5000, Notification.Position.MIDDLE);
+        } else if (from == null || to == null || !from.isBefore(to)) {
+            Notification.show("Choose a range with the start before the end.", 5000, Notification.Position.MIDDLE);
+        } else {
+            refreshStatistics = () -> getFlightsStatistics(code, from, to, null);
+            runInBackground("flightsStatisticsRange", statisticsProgress, button, () -> {
+                Map<String, Integer> flightsStatistics = service.getFlightsStatistics(code,
+                        from.toInstant(ZoneOffset.UTC), to.toInstant(ZoneOffset.UTC));
+                return () -> setTotalFlightStatistics(flightsStatistics, "Selected range");
+            });
+        }
+    }
+
+    private void getFlightsStatistics(String code, OffsetDateTime dateTime, Button button) {
         if (code != null) {
-            Map<String, Integer> flightsStatistics = service.getFlightsStatistics(code, dateTime);
-            if (dateTime != null)
-                setTotalFlightStatistics(flightsStatistics, "Selected date");
-            else
-                setTotalFlightStatistics(flightsStatistics, "Total");
+            refreshStatistics = () -> getFlightsStatistics(code, dateTime, null);
+            runInBackground("flightsStatistics", statisticsProgress, button, () -> {
+                Map<String, Integer> flightsStatistics = service.getFlightsStatistics(code, dateTime);
+                return () -> setTotalFlightStatistics(flightsStatistics, dateTime != null ? "Selected date" : "Total");
+            });
         } else {
             Notification.show("Airport code cannot be not selected.", 5000, Notification.Position.MIDDLE);
         }
@@ -219,4 +341,59 @@ public class MainView extends VerticalLayout {
         arrivalBaggage.setText(prefix + " arrival baggage: " + flightsStatistics.get("baggageArriving"));
         departureBaggage.setText(prefix + " departing baggage: " + flightsStatistics.get("baggageDeparting"));
     }
+
+    @Override
+    protected void onAttach(AttachEvent attachEvent) {
+        UI ui = attachEvent.getUI();
+        Runnable removeListener = service.addCatalogChangeListener(changes -> {
+            try {
+                ui.access(() -> applyCatalogChanges(changes));
+            } catch (UIDetachedException e) {
+                // detached concurrently, the registration is removed in onDetach
+            }
+        });
+        catalogChangeRegistration = removeListener::run;
+    }
+
+    @Override
+    protected void onDetach(DetachEvent detachEvent) {
+        catalogChangeRegistration.remove();
+        catalogChangeRegistration = null;
+    }
+
+    /**
+     * Reloads the visible grid rows and combo box suggestions when flights changed and repeats the last statistics
+     * query, so open views follow upstream changes without user action.
+     */
+    private void applyCatalogChanges(CatalogChanges changes) {
+        if (changes.hasFlightChanges()) {
+            flightGrid.getDataProvider().refreshAll();
+            catalogComboBoxes.forEach(comboBox -> comboBox.getDataProvider().refreshAll());
+        }
+        if (refreshStatistics != null)
+            refreshStatistics.run();
+    }
+
+    private void runInBackground(String action, ProgressBar progressBar, Component trigger, Callable<Command> task) {
+        backgroundTasks.run(action, progressBar, trigger, task, this::showError);
+    }
+
+    private void showError(Throwable error) {
+        if (error instanceof FlightNotFoundException)
+            flightNotFoundNotification();
+        else
+            BackgroundTasks.showError(error);
+    }
+
+    private static ProgressBar createProgressBar() {
+        ProgressBar progressBar = new ProgressBar();
+        progressBar.setIndeterminate(true);
+        progressBar.setVisible(false);
+        return progressBar;
+    }
+
+    private static Flight copyOf(Flight flight) {
+        return new Flight(flight.getId(), flight.getFlightNumber(), flight.getDepartureAirportIATACode(),
+                flight.getArrivalAirportIATACode(), flight.getDepartureDate());
+    }
 }
@@ -0,0 +1,29 @@
+package com.example.application.controller;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ControllerTest {
+
+    @Test
+    void acceptsGzipWithNonZeroQuality() {
+        assertThat(Controller.acceptsGzip("gzip")).isTrue();
+        assertThat(Controller.acceptsGzip("deflate, gzip;q=0.5")).isTrue();
+        assertThat(Controller.acceptsGzip("GZIP ; q=1.0")).isTrue();
+        assertThat(Controller.acceptsGzip("x-gzip")).isTrue();
+        assertThat(Controller.acceptsGzip("*")).isTrue();
+    }
+
+    @Test
+    void refusesGzipWithZeroQualityOrNotListed() {
+        assertThat(Controller.acceptsGzip(null)).isFalse();
+        assertThat(Controller.acceptsGzip("")).isFalse();
+        assertThat(Controller.acceptsGzip("gzip;q=0")).isFalse();
+        assertThat(Controller.acceptsGzip("gzip;q=0.000, deflate")).isFalse();
+        assertThat(Controller.acceptsGzip("*;q=1, gzip;q=0")).isFalse();
+        assertThat(Controller.acceptsGzip("*;q=0")).isFalse();
+        assertThat(Controller.acceptsGzip("identity, br")).isFalse();
+        assertThat(Controller.acceptsGzip("gzipx")).isFalse();
+    }
+}
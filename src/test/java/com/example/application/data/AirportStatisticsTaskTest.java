@@ -0,0 +1,48 @@
+package com.example.application.data;
+
+import com.example.application.model.Baggage;
+import com.example.application.model.Flight;
+import com.example.application.model.FlightDetails;
+import com.example.application.model.RankedAirport;
+import com.example.application.model.WeightUnit;
+import org.junit.jupiter.api.Test;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AirportStatisticsTaskTest {
+
+    private static final OffsetDateTime DEPARTURE = OffsetDateTime.of(2021, 5, 1, 10, 0, 0, 0, ZoneOffset.UTC);
+
+    private final FlightCatalog catalog = new FlightCatalog(List.of(
+            new Flight(1, 100, "KRK", "WAW", DEPARTURE),
+            new Flight(1, 101, "KRK", "GDN", DEPARTURE),
+            new Flight(null, 102, "KRK", "WAW", DEPARTURE),
+            new Flight(2, 200, "WAW", "KRK", DEPARTURE),
+            new Flight(3, 300, "GDN", "KRK", DEPARTURE.plusHours(1))));
+    private final StatisticsIndex statisticsIndex = new StatisticsIndex();
+
+    @Test
+    void countsTheSameFlightsAsTheStatisticsIndex() {
+        statisticsIndex.applyFlights(catalog);
+        statisticsIndex.applyDetails(new FlightDetails(1, List.of(new Baggage(0, 30, WeightUnit.KG, 3)), List.of()));
+        statisticsIndex.applyDetails(new FlightDetails(2, List.of(new Baggage(0, 10, WeightUnit.KG, 1)), List.of()));
+
+        assertThat(AirportStatisticsTask.compute(catalog, statisticsIndex, null, null))
+                .containsExactly(expected("GDN", null), expected("KRK", null), expected("WAW", null));
+        assertThat(AirportStatisticsTask.compute(catalog, statisticsIndex, DEPARTURE.toInstant(),
+                DEPARTURE.plusSeconds(1).toInstant()))
+                .containsExactly(expected("GDN", DEPARTURE), expected("KRK", DEPARTURE), expected("WAW", DEPARTURE));
+        assertThat(expected("KRK", null)).isEqualTo(new RankedAirport("KRK", 1, 2, 3, 1));
+    }
+
+    private RankedAirport expected(String code, OffsetDateTime dateTime) {
+        Map<String, Integer> statistics = statisticsIndex.getStatistics(code, dateTime);
+        return new RankedAirport(code, statistics.get("departures"), statistics.get("arrivals"),
+                statistics.get("baggageDeparting"), statistics.get("baggageArriving"));
+    }
+}
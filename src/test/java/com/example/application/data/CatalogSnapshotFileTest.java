@@ -0,0 +1,133 @@
+package com.example.application.data;
+
+import com.example.application.model.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CatalogSnapshotFileTest {
+
+    private static final OffsetDateTime DEPARTURE = OffsetDateTime.of(2021, 5, 1, 10, 30, 0, 0,
+            ZoneOffset.ofHoursMinutes(5, 30));
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void readsBackWhatWasWritten() throws IOException {
+        List<Flight> flights = Arrays.asList(
+                new Flight(1, 100, "KRK", "WAW", DEPARTURE),
+                new Flight(2, 200, "WAW", "LHR", DEPARTURE.plusHours(1)),
+                new Flight(3, null, "LHR", null, null),
+                new Flight(null, 400, null, "KRK", DEPARTURE.minusDays(1)));
+        FlightDetails withItems = new FlightDetails(1,
+                List.of(new Baggage(0, 20, WeightUnit.KG, 2), new Baggage(1, 33, WeightUnit.LB, 1)),
+                List.of(new Cargo(0, 750, WeightUnit.LB, 3)));
+        FlightDetails evicted = new FlightDetails(2, List.of(new Baggage(0, 5, WeightUnit.KG, 7)),
+                Collections.emptyList());
+        StatisticsIndex statisticsIndex = new StatisticsIndex();
+        statisticsIndex.applyFlights(new FlightCatalog(flights));
+        statisticsIndex.applyDetails(withItems);
+        statisticsIndex.applyDetails(evicted);
+
+        CatalogSnapshotFile file = snapshotFile();
+        file.write(flights, Map.of(1, withItems), statisticsIndex);
+        CatalogSnapshotFile.Snapshot snapshot = file.read().orElseThrow();
+
+        assertThat(snapshot.getCatalog().getFlights()).containsExactlyElementsOf(flights);
+        assertThat(snapshot.getDetails()).containsExactly(withItems);
+        assertThat(snapshot.getBaggagePieces()).isEqualTo(Map.of(1, 3, 2, 7));
+        assertThat(snapshot.getWeights()).isEqualTo(Map.of(1, withItems.getWeights(), 2, evicted.getWeights()));
+    }
+
+    @Test
+    void restoresTheStatisticsIndex() throws IOException {
+        List<Flight> flights = List.of(new Flight(1, 100, "KRK", "WAW", DEPARTURE));
+        FlightDetails details = new FlightDetails(1, List.of(new Baggage(0, 21, WeightUnit.LB, 4)),
+                List.of(new Cargo(0, 1234, WeightUnit.KG, 1)));
+        StatisticsIndex statisticsIndex = new StatisticsIndex();
+        statisticsIndex.applyFlights(new FlightCatalog(flights));
+        statisticsIndex.applyDetails(details);
+
+        CatalogSnapshotFile file = snapshotFile();
+        file.write(flights, Collections.emptyMap(), statisticsIndex);
+        CatalogSnapshotFile.Snapshot snapshot = file.read().orElseThrow();
+        StatisticsIndex restored = new StatisticsIndex();
+        restored.applyFlights(snapshot.getCatalog());
+        snapshot.getBaggagePieces().forEach((flightId, pieces) ->
+                restored.applyTotals(flightId, pieces, snapshot.getWeights().get(flightId)));
+
+        assertThat(restored.getWeights(1)).isEqualTo(details.getWeights());
+        assertThat(restored.getStatistics("KRK", null)).isEqualTo(statisticsIndex.getStatistics("KRK", null));
+        assertThat(restored.getStatistics("WAW", DEPARTURE))
+                .containsEntry("arrivals", 1)
+                .containsEntry("baggageArriving", 4);
+    }
+
+    @Test
+    void readsBackConsistentlyWhenDetailsChangeDuringTheWrite() throws IOException {
+        List<Flight> flights = List.of(new Flight(1, 100, "KRK", "WAW", DEPARTURE),
+                new Flight(2, 200, "WAW", "KRK", DEPARTURE));
+        FlightDetails first = new FlightDetails(1, List.of(new Baggage(0, 20, WeightUnit.KG, 2)),
+                List.of(new Cargo(0, 750, WeightUnit.LB, 3)));
+        FlightDetails replaced = new FlightDetails(2, List.of(new Baggage(0, 5, WeightUnit.KG, 7)),
+                Collections.emptyList());
+        FlightDetails replacement = new FlightDetails(2, List.of(new Baggage(0, 5, WeightUnit.KG, 7),
+                new Baggage(1, 9, WeightUnit.KG, 1)), Collections.emptyList());
+        Map<Integer, FlightDetails> changing = new HashMap<>(Map.of(1, first, 2, replaced)) {
+            /**
+             * Every read evicts flight 1 and replaces the details of flight 2, like the cache changing under a
+             * write.
+             */
+            @Override
+            public FlightDetails get(Object key) {
+                FlightDetails value = super.get(key);
+                if (Integer.valueOf(1).equals(key))
+                    remove(key);
+                else if (Integer.valueOf(2).equals(key))
+                    put(2, replacement);
+                return value;
+            }
+        };
+        StatisticsIndex statisticsIndex = new StatisticsIndex();
+        statisticsIndex.applyFlights(new FlightCatalog(flights));
+
+        CatalogSnapshotFile file = snapshotFile();
+        file.write(flights, changing, statisticsIndex);
+        CatalogSnapshotFile.Snapshot snapshot = file.read().orElseThrow();
+
+        assertThat(snapshot.getDetails()).containsExactlyInAnyOrder(first, replaced);
+    }
+
+    @Test
+    void ignoresMissingAndUnknownFiles() throws IOException {
+        CatalogSnapshotFile file = snapshotFile();
+        assertThat(file.read()).isEmpty();
+
+        Files.write(directory.resolve("catalog.snapshot"), new byte[]{1, 2, 3, 4, 5, 6, 7, 8});
+        assertThat(file.read()).isEmpty();
+
+        Files.write(directory.resolve("catalog.snapshot"), new byte[]{0x41, 0x49, 0x52});
+        assertThat(file.read()).isEmpty();
+    }
+
+    @Test
+    void doesNothingWithoutPath() throws IOException {
+        CatalogSnapshotFile file = new CatalogSnapshotFile("");
+        file.write(List.of(new Flight(1, 100, "KRK", "WAW", DEPARTURE)), Collections.emptyMap(),
+                new StatisticsIndex());
+        assertThat(file.read()).isEmpty();
+    }
+
+    private CatalogSnapshotFile snapshotFile() {
+        return new CatalogSnapshotFile(directory.resolve("catalog.snapshot").toString());
+    }
+}
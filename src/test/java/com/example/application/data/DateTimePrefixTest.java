@@ -0,0 +1,53 @@
+package com.example.application.data;
+
+import com.example.application.model.Flight;
+import org.junit.jupiter.api.Test;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DateTimePrefixTest {
+
+    private static final List<OffsetDateTime> DATES = List.of(
+            OffsetDateTime.of(2020, 2, 29, 23, 30, 0, 0, ZoneOffset.ofHours(-10)),
+            OffsetDateTime.of(2020, 3, 1, 0, 15, 0, 0, ZoneOffset.ofHours(14)),
+            OffsetDateTime.of(2020, 3, 1, 0, 15, 45, 0, ZoneOffset.UTC),
+            OffsetDateTime.of(2020, 12, 31, 12, 0, 0, 0, ZoneOffset.ofHoursMinutes(5, 30)),
+            OffsetDateTime.of(2021, 1, 10, 8, 5, 0, 0, ZoneOffset.ofHours(-3)));
+
+    private final FlightCatalog catalog = new FlightCatalog(DATES.stream()
+            .map(date -> new Flight(null, null, "KRK", "WAW", date))
+            .collect(Collectors.toList()));
+
+    @Test
+    void matchesLikeTheTextOfTheDates() {
+        for (String filter : List.of("2", "20", "2020", "2020-0", "2020-03", "2020-1", "2020-12-3", "2020-02-29T2",
+                "2020-03-01T00:15", "2020-03-01T00:15:", "2020-03-01T00:15+", "2020-03-01T00:15Z",
+                "2021-01-10T08:05-03:00", "2022", "2020-00", "2020-13", "2020-02-3", "2020-12-31T24", "x", "2020/"))
+            assertThat(catalog.getDepartureDates(filter, 0, 100))
+                    .as(filter)
+                    .containsExactlyElementsOf(DATES.stream()
+                            .filter(date -> date.toString().startsWith(filter))
+                            .sorted()
+                            .collect(Collectors.toList()));
+    }
+
+    @Test
+    void countsAndPagesMatchingDates() {
+        assertThat(catalog.countDepartureDates("2020")).isEqualTo(4);
+        assertThat(catalog.countDepartureDates("2020-03-01")).isEqualTo(2);
+        assertThat(catalog.countDepartureDates("")).isEqualTo(DATES.size());
+        assertThat(catalog.getDepartureDates("2020", 1, 2)).containsExactly(DATES.get(2), DATES.get(0));
+    }
+
+    @Test
+    void rejectsTextNoDateStartsWith() {
+        assertThat(DateTimePrefix.parse("2020-1x")).isNull();
+        assertThat(DateTimePrefix.parse("2020 03")).isNull();
+        assertThat(DateTimePrefix.parse("2020-03-01T10:1")).isNotNull();
+    }
+}
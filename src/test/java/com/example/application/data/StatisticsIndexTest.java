@@ -0,0 +1,165 @@
+package com.example.application.data;
+
+import com.example.application.model.Baggage;
+import com.example.application.model.Flight;
+import com.example.application.model.FlightDetails;
+import com.example.application.model.FlightWeights;
+import com.example.application.model.RankedAirport;
+import com.example.application.model.WeightUnit;
+import org.junit.jupiter.api.Test;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StatisticsIndexTest {
+
+    private static final OffsetDateTime DEPARTURE = OffsetDateTime.of(2021, 5, 1, 10, 0, 0, 0, ZoneOffset.UTC);
+
+    private final StatisticsIndex index = new StatisticsIndex();
+
+    @Test
+    void countsAddedFlightsAndTheirBaggage() {
+        List<Flight> withoutDetails = index.applyFlights(catalog(flight(1, "KRK", "WAW"), flight(2, "KRK", "GDN")));
+        assertThat(withoutDetails).extracting(Flight::getId).containsExactly(1, 2);
+        assertThat(index.getStatistics("KRK", null))
+                .containsEntry("departures", 2).containsEntry("baggageDeparting", 0);
+
+        index.applyDetails(details(1, 3));
+        index.applyDetails(details(2, 4));
+
+        assertThat(index.getStatistics("KRK", null))
+                .containsEntry("departures", 2).containsEntry("baggageDeparting", 7);
+        assertThat(index.getStatistics("WAW", null)).containsEntry("arrivals", 1).containsEntry("baggageArriving", 3);
+        assertThat(index.getBaggagePieces(1)).isEqualTo(3);
+        assertThat(index.getWeights(1)).isEqualTo(details(1, 3).getWeights());
+    }
+
+    @Test
+    void replacesTheBaggageOfChangedDetails() {
+        index.applyFlights(catalog(flight(1, "KRK", "WAW")));
+        index.applyDetails(details(1, 3));
+        index.applyDetails(details(1, 5));
+
+        assertThat(index.getStatistics("KRK", null)).containsEntry("baggageDeparting", 5);
+        assertThat(index.getStatistics("WAW", null)).containsEntry("baggageArriving", 5);
+    }
+
+    @Test
+    void movesDetailsOfUnknownFlightsInOnceTheCatalogHasThem() {
+        index.applyDetails(details(1, 3));
+        assertThat(index.getBaggagePieces()).containsEntry(1, 3);
+        assertThat(index.getStatistics("KRK", null)).containsEntry("baggageDeparting", 0);
+
+        List<Flight> withoutDetails = index.applyFlights(catalog(flight(1, "KRK", "WAW")));
+
+        assertThat(withoutDetails).isEmpty();
+        assertThat(index.getStatistics("KRK", null))
+                .containsEntry("departures", 1).containsEntry("baggageDeparting", 3);
+        assertThat(index.getBaggagePieces(1)).isEqualTo(3);
+    }
+
+    @Test
+    void movesTheBaggageOfChangedFlightsBetweenAirports() {
+        index.applyFlights(catalog(flight(1, "KRK", "WAW"), flight(2, "KRK", "GDN")));
+        index.applyDetails(details(1, 3));
+        index.applyDetails(details(2, 4));
+        long version = index.getVersion();
+
+        List<Flight> withoutDetails = index.applyFlights(catalog(flight(1, "KTW", "WAW"), flight(2, "KRK", "GDN")));
+
+        assertThat(withoutDetails).isEmpty();
+        assertThat(index.getVersion()).isGreaterThan(version);
+        assertThat(index.getStatistics("KRK", null))
+                .containsEntry("departures", 1).containsEntry("baggageDeparting", 4);
+        assertThat(index.getStatistics("KTW", null))
+                .containsEntry("departures", 1).containsEntry("baggageDeparting", 3);
+        assertThat(index.getStatistics("WAW", null)).containsEntry("arrivals", 1).containsEntry("baggageArriving", 3);
+    }
+
+    @Test
+    void leavesTheStatisticsOfUnchangedFlightsAlone() {
+        index.applyFlights(catalog(flight(1, "KRK", "WAW")));
+        index.applyDetails(details(1, 3));
+        long version = index.getVersion();
+
+        index.applyFlights(catalog(flight(1, "KRK", "WAW")));
+
+        assertThat(index.getVersion()).isEqualTo(version);
+        assertThat(index.getStatistics("KRK", null))
+                .containsEntry("departures", 1).containsEntry("baggageDeparting", 3);
+    }
+
+    @Test
+    void forgetsRemovedFlights() {
+        index.applyFlights(catalog(flight(1, "KRK", "WAW"), flight(2, "GDN", "WAW")));
+        index.applyDetails(details(1, 3));
+        index.applyDetails(details(2, 4));
+
+        index.applyFlights(catalog(flight(2, "GDN", "WAW")));
+
+        assertThat(index.getStatistics("KRK", null))
+                .containsEntry("departures", 0).containsEntry("baggageDeparting", 0);
+        assertThat(index.getStatistics("WAW", null)).containsEntry("arrivals", 1).containsEntry("baggageArriving", 4);
+        assertThat(index.getBusiestAirports(10)).extracting(RankedAirport::getCode)
+                .containsExactlyInAnyOrder("GDN", "WAW");
+        assertThat(index.getBaggagePieces(1)).isZero();
+        assertThat(index.getWeights(1)).isNull();
+    }
+
+    @Test
+    void forgetsRemovedDetails() {
+        index.applyFlights(catalog(flight(1, "KRK", "WAW")));
+        index.applyDetails(details(1, 3));
+
+        index.removeBaggagePieces(1);
+
+        assertThat(index.getStatistics("KRK", null))
+                .containsEntry("departures", 1).containsEntry("baggageDeparting", 0);
+        assertThat(index.getWeights(1)).isNull();
+        assertThat(index.applyFlights(catalog(flight(1, "KRK", "WAW")))).extracting(Flight::getId).containsExactly(1);
+    }
+
+    @Test
+    void restoresTotalsWithoutDetails() {
+        index.applyFlights(catalog(flight(1, "KRK", "WAW")));
+        FlightWeights weights = FlightWeights.of(120.5, 30.25);
+
+        index.applyTotals(1, 6, weights);
+
+        assertThat(index.getWeights(1)).isEqualTo(weights);
+        assertThat(index.getStatistics("KRK", null)).containsEntry("baggageDeparting", 6);
+    }
+
+    @Test
+    void countsFlightsOfOneDepartureDate() {
+        OffsetDateTime sameInstant = DEPARTURE.withOffsetSameInstant(ZoneOffset.ofHours(2));
+        index.applyFlights(catalog(flight(1, "KRK", "WAW"),
+                new Flight(2, 2, "KRK", "WAW", sameInstant),
+                new Flight(3, 3, "KRK", "GDN", DEPARTURE.plusMinutes(1))));
+        index.applyDetails(details(1, 3));
+        index.applyDetails(details(2, 4));
+
+        Map<String, Integer> atDeparture = index.getStatistics("KRK", DEPARTURE);
+        assertThat(atDeparture).containsEntry("departures", 1).containsEntry("baggageDeparting", 3);
+        assertThat(index.getStatistics("WAW", sameInstant))
+                .containsEntry("arrivals", 1).containsEntry("baggageArriving", 4);
+        assertThat(index.getStatistics("KRK", DEPARTURE.plusNanos(1))).containsEntry("departures", 0);
+        assertThat(index.getStatistics("GDN", DEPARTURE.plusMinutes(1))).containsEntry("arrivals", 1);
+    }
+
+    private static FlightCatalog catalog(Flight... flights) {
+        return new FlightCatalog(List.of(flights));
+    }
+
+    private static Flight flight(int id, String departureCode, String arrivalCode) {
+        return new Flight(id, id, departureCode, arrivalCode, DEPARTURE);
+    }
+
+    private static FlightDetails details(int flightId, int pieces) {
+        return new FlightDetails(flightId, List.of(new Baggage(0, 10 * pieces, WeightUnit.KG, pieces)), List.of());
+    }
+}
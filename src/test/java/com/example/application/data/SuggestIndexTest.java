@@ -0,0 +1,80 @@
+package com.example.application.data;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SuggestIndexTest {
+
+    private final SuggestIndex index = new SuggestIndex(
+            new int[]{0, 1, 7, 10, 12, 19, 100, 123, 1000, 214748364, 2147483640, 2147483647},
+            new String[]{"GDN", "KRK", "KTW", "WAW"});
+
+    @Test
+    void findsFlightNumbersStartingWithThePrefixInAscendingOrder() {
+        assertThat(index.findFlightNumbers("1", 0, 100)).containsExactly(1, 10, 12, 19, 100, 123, 1000);
+        assertThat(index.findFlightNumbers("12", 0, 100)).containsExactly(12, 123);
+        assertThat(index.findFlightNumbers("7", 0, 100)).containsExactly(7);
+        assertThat(index.findFlightNumbers("5", 0, 100)).isEmpty();
+        assertThat(index.countFlightNumbers("1")).isEqualTo(7);
+    }
+
+    @Test
+    void findsEveryFlightNumberWithoutPrefix() {
+        assertThat(index.findFlightNumbers(null, 0, 100)).hasSize(12);
+        assertThat(index.findFlightNumbers("", 0, 100)).hasSize(12);
+        assertThat(index.countFlightNumbers(null)).isEqualTo(12);
+    }
+
+    @Test
+    void matchesZeroOnlyByItself() {
+        assertThat(index.findFlightNumbers("0", 0, 100)).containsExactly(0);
+        assertThat(index.countFlightNumbers("0")).isEqualTo(1);
+        assertThat(index.findFlightNumbers("01", 0, 100)).isEmpty();
+        assertThat(index.findFlightNumbers("00", 0, 100)).isEmpty();
+        assertThat(index.countFlightNumbers("007")).isZero();
+    }
+
+    @Test
+    void handlesPrefixesUpToTheLargestInt() {
+        assertThat(index.findFlightNumbers("214748364", 0, 100)).containsExactly(214748364, 2147483640, 2147483647);
+        assertThat(index.findFlightNumbers("2147483647", 0, 100)).containsExactly(2147483647);
+        assertThat(index.findFlightNumbers("2147483648", 0, 100)).isEmpty();
+        assertThat(index.findFlightNumbers("9999999999", 0, 100)).isEmpty();
+        assertThat(index.findFlightNumbers("21474836470", 0, 100)).isEmpty();
+    }
+
+    @Test
+    void rejectsPrefixesThatAreNotDigits() {
+        assertThat(index.findFlightNumbers("1a", 0, 100)).isEmpty();
+        assertThat(index.findFlightNumbers("-1", 0, 100)).isEmpty();
+        assertThat(index.findFlightNumbers(" 1", 0, 100)).isEmpty();
+    }
+
+    @Test
+    void pagesAcrossNumbersOfDifferentLength() {
+        assertThat(index.findFlightNumbers("1", 2, 3)).containsExactly(12, 19, 100);
+        assertThat(index.findFlightNumbers("1", 4, 2)).containsExactly(100, 123);
+        assertThat(index.findFlightNumbers("1", 6, 5)).containsExactly(1000);
+        assertThat(index.findFlightNumbers("1", 7, 5)).isEmpty();
+        assertThat(index.findFlightNumbers("1", 0, 0)).isEmpty();
+        assertThat(index.findFlightNumbers("214748364", 1, Integer.MAX_VALUE))
+                .containsExactly(2147483640, 2147483647);
+    }
+
+    @Test
+    void findsAirportCodesIgnoringCase() {
+        assertThat(index.findAirportCodes("k", 0, 100)).containsExactly("KRK", "KTW");
+        assertThat(index.findAirportCodes("Kt", 0, 100)).containsExactly("KTW");
+        assertThat(index.findAirportCodes("x", 0, 100)).isEmpty();
+        assertThat(index.countAirportCodes("k")).isEqualTo(2);
+        assertThat(index.countAirportCodes(null)).isEqualTo(4);
+    }
+
+    @Test
+    void pagesAirportCodes() {
+        assertThat(index.findAirportCodes(null, 1, 2)).containsExactly("KRK", "KTW");
+        assertThat(index.findAirportCodes("k", 1, Integer.MAX_VALUE)).containsExactly("KTW");
+        assertThat(index.findAirportCodes("k", Integer.MAX_VALUE, 10)).isEmpty();
+    }
+}
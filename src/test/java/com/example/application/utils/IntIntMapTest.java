@@ -0,0 +1,55 @@
+package com.example.application.utils;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class IntIntMapTest {
+
+    @Test
+    void returnsStoredValuesAndMissingOtherwise() {
+        IntIntMap map = new IntIntMap(4);
+        assertThat(map.putIfAbsent(7, 0)).isEqualTo(IntIntMap.MISSING);
+        assertThat(map.putIfAbsent(-3, 5)).isEqualTo(IntIntMap.MISSING);
+        assertThat(map.putIfAbsent(0, 9)).isEqualTo(IntIntMap.MISSING);
+
+        assertThat(map.get(7)).isZero();
+        assertThat(map.get(-3)).isEqualTo(5);
+        assertThat(map.get(0)).isEqualTo(9);
+        assertThat(map.get(8)).isEqualTo(IntIntMap.MISSING);
+        assertThat(map.size()).isEqualTo(3);
+    }
+
+    @Test
+    void keepsTheFirstValueOfAKey() {
+        IntIntMap map = new IntIntMap(4);
+        map.putIfAbsent(7, 1);
+        assertThat(map.putIfAbsent(7, 2)).isEqualTo(1);
+        assertThat(map.get(7)).isEqualTo(1);
+        assertThat(map.size()).isEqualTo(1);
+    }
+
+    @Test
+    void growsBeyondTheExpectedSize() {
+        IntIntMap map = new IntIntMap(0);
+        for (int i = 0; i < 10_000; i++)
+            map.putIfAbsent(i * 1024, i);
+        map.putIfAbsent(Integer.MIN_VALUE, 1);
+        map.putIfAbsent(Integer.MAX_VALUE, 2);
+
+        assertThat(map.size()).isEqualTo(10_002);
+        for (int i = 0; i < 10_000; i++)
+            assertThat(map.get(i * 1024)).isEqualTo(i);
+        assertThat(map.get(Integer.MIN_VALUE)).isEqualTo(1);
+        assertThat(map.get(Integer.MAX_VALUE)).isEqualTo(2);
+        assertThat(map.get(1)).isEqualTo(IntIntMap.MISSING);
+    }
+
+    @Test
+    void rejectsNegativeValues() {
+        IntIntMap map = new IntIntMap(4);
+        assertThatThrownBy(() -> map.putIfAbsent(1, IntIntMap.MISSING)).isInstanceOf(IllegalArgumentException.class);
+        assertThat(map.size()).isZero();
+    }
+}